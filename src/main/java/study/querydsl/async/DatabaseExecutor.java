@@ -0,0 +1,83 @@
+package study.querydsl.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DB 조회 전용 스레드 풀. 비동기 검색 API 가 톰캣 요청 스레드 대신 여기서 쿼리를 실행한다.
+ * <p>
+ * 스레드 수는 커넥션 풀 크기와 같다. 그 이상 돌려봐야 커넥션을 기다리며 막힐 뿐이다.
+ * 대기열도 제한해서, 가득 차면 쌓아두지 않고 바로 503 으로 거절한다. ({@link DatabaseBusyException})
+ * <p>
+ * 돌려준 future 를 cancel 하면 대기 중인 작업은 실행되지 않고, 실행 중이면 그 스레드를 interrupt 한다.
+ * (CompletableFuture.supplyAsync 는 cancel 해도 작업이 그대로 돈다)
+ */
+@Slf4j
+@Component
+public class DatabaseExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public DatabaseExecutor(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                            @Value("${querydsl.async.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "db-query-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("database executor ready: threads={}, queue={}", poolSize, queueCapacity);
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(query.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new DatabaseBusyException("database executor queue is full (" + executor.getQueue().size() + ")");
+        }
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
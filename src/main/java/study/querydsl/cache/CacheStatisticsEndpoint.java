@@ -0,0 +1,76 @@
+package study.querydsl.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * /actuator/cachestats : 2차 캐시 region 별 hit/miss/put/eviction 수
+ */
+@Component
+@Endpoint(id = "cachestats")
+@RequiredArgsConstructor
+public class CacheStatisticsEndpoint {
+
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    private final EntityManagerFactory emf;
+
+    @ReadOperation
+    public Map<String, Object> cacheStatistics() {
+        Statistics statistics = emf.unwrap(SessionFactoryImplementor.class).getStatistics();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            if (QUERY_RESULTS_REGION.equals(region)) {
+                result.put(region, toMap(region, statistics.getQueryRegionStatistics(region)));
+            } else {
+                result.put(region, toMap(region, statistics.getDomainDataRegionStatistics(region)));
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Object> toMap(String region, CacheRegionStatistics stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        if (stats == null) {
+            return map;
+        }
+        map.put("hits", stats.getHitCount());
+        map.put("misses", stats.getMissCount());
+        map.put("puts", stats.getPutCount());
+        map.put("elementsInMemory", stats.getElementCountInMemory());
+        map.put("evictions", evictions(region));
+        return map;
+    }
+
+    /**
+     * 하이버네이트 통계에는 eviction 이 없어서 JCache 통계 MBean 에서 읽는다. (ehcache.xml enable-statistics)
+     */
+    private long evictions(String region) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Set<ObjectName> names = server.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + region), null);
+            long evictions = 0;
+            for (ObjectName name : names) {
+                evictions += (Long) server.getAttribute(name, "CacheEvictions");
+            }
+            return evictions;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
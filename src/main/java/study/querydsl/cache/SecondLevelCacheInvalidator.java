@@ -0,0 +1,31 @@
+package study.querydsl.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Component;
+import study.querydsl.event.MemberChangeListener;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 벌크 update/delete 후 해당 엔티티 region 과 쿼리 캐시를 비운다.
+ * <p>
+ * JPQL 벌크 연산은 하이버네이트도 region 을 비우지만, JDBC 로 직접 쓰는 경로까지 같은 훅으로 처리하기 위해 명시적으로 비운다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheInvalidator implements MemberChangeListener {
+
+    private final EntityManagerFactory emf;
+
+    @Override
+    public void onBulkOperation(Class<?> entityType) {
+        Cache cache = emf.unwrap(SessionFactoryImplementor.class).getCache();
+        cache.evictEntityData(entityType);
+        cache.evictQueryRegions();
+        log.debug("second level cache evicted after bulk operation: {}", entityType.getSimpleName());
+    }
+}
@@ -1,26 +1,89 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationStartupAware;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.startup.SeedingStatus;
+import study.querydsl.startup.StartupTimelineReport;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+/**
+ * 로컬 초기 데이터. 기본은 기동 중(@PostConstruct)에 넣는다.
+ * querydsl.init-member.background=true 면 기동이 끝난 뒤 별도 스레드에서 넣고, 그동안 API 는 "warming" 503 을 응답한다.
+ */
+@Slf4j
 @Profile("local")
 @Component
 @RequiredArgsConstructor
-public class InitMember {
+public class InitMember implements ApplicationStartupAware {
 
     private final InitMemberService initMemberService;
+    private final SeedingStatus seedingStatus;
+
+    @Value("${querydsl.init-member.background:false}")
+    private boolean background;
+
+    @Value("${querydsl.init-member.count:100}")
+    private int count;
+
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+
+    @Override
+    public void setApplicationStartup(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
 
     @PostConstruct
     public void init() {
-        initMemberService.init();
+        if (background) {
+            seedingStatus.warming(); //웹 서버가 뜨기 전부터 막아둔다
+            return;
+        }
+        seed();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initInBackground() {
+        if (!background) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                seed();
+                seedingStatus.ready();
+            } catch (RuntimeException e) {
+                log.error("background member seeding failed", e);
+                seedingStatus.failed();
+            }
+        }, "init-member");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void seed() {
+        StartupStep step = applicationStartup.start(StartupTimelineReport.SEEDING)
+                .tag("members", String.valueOf(count))
+                .tag("background", String.valueOf(background));
+        long start = System.nanoTime();
+        try {
+            initMemberService.init(count);
+        } finally {
+            step.end();
+        }
+        log.info("seeded {} members in {}ms", count, (System.nanoTime() - start) / 1_000_000);
     }
 
     @Component
@@ -28,16 +91,26 @@ public class InitMember {
         @PersistenceContext
         private EntityManager em;
 
+        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+        private int batchSize;
+
         @Transactional
-        public void init() {
+        public void init(int count) {
             Team teamA = new Team("teamA");
             Team teamB = new Team("teamB");
             em.persist(teamA);
             em.persist(teamB);
 
-            for (int i = 0; i < 100; i++) {
+            for (int i = 0; i < count; i++) {
                 Team selectedTeam = i % 2 == 0 ? teamA : teamB;
                 em.persist(new Member("member"+i, i, selectedTeam));
+                if (batchSize > 0 && (i + 1) % batchSize == 0) { //0 이면 배치를 끈 설정이라 중간에 내보내지 않는다
+                    //배치 insert 로 내보내고 영속성 컨텍스트가 seed 크기만큼 커지지 않게 한다. 팀은 다시 붙인다
+                    em.flush();
+                    em.clear();
+                    teamA = em.getReference(Team.class, teamA.getId());
+                    teamB = em.getReference(Team.class, teamB.getId());
+                }
             }
         }
     }
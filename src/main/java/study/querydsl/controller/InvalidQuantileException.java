@@ -0,0 +1,12 @@
+package study.querydsl.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidQuantileException extends IllegalArgumentException {
+
+    public InvalidQuantileException(String message) {
+        super(message);
+    }
+}
@@ -1,22 +1,145 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.async.DatabaseBusyException;
+import study.querydsl.async.DatabaseExecutor;
+import study.querydsl.csv.MemberCsvExporter;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.dto.MemberTeamJacksonValue;
+import study.querydsl.repository.CoalescingMemberRepository;
 import study.querydsl.repository.MemberJpaRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
+    private final CoalescingMemberRepository coalescingMemberRepository;
+    private final MemberCsvExporter memberCsvExporter;
+    private final DatabaseExecutor databaseExecutor;
 
+    @Value("${querydsl.batch-search.max-conditions:100}")
+    private int maxBatchConditions;
+
+    /**
+     * ?fields=memberId,username 처럼 필요한 필드만 받을 수 있다. 팀 필드를 고르지 않으면 team 을 조인하지 않는다.
+     */
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+    public MemberTeamJacksonValue searchMemberV1(MemberSearchCondition condition,
+                                              @RequestParam(required = false) List<String> fields) {
+        Set<MemberTeamField> selected = MemberTeamField.parse(fields);
+        return MemberTeamJacksonValue.of(memberJpaRepository.search(condition, selected), selected);
+    }
+
+    /**
+     * ?page=0&size=20&sort=age,desc  정렬은 MemberSortResolver 규칙을 따른다.
+     */
+    @GetMapping("/v2/members")
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+        return coalescingMemberRepository.searchPageSimple(condition, pageable);
+    }
+
+    /**
+     * ?estimateTotal=true 면 조건이 없거나 넓을 때 전체 건수를 세지 않고 추정한다. 응답의 totalEstimated 로 구분한다.
+     */
+    @GetMapping("/v3/members")
+    public MemberTeamJacksonValue searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(required = false) List<String> fields,
+                                              @RequestParam(defaultValue = "false") boolean estimateTotal) {
+        Set<MemberTeamField> selected = MemberTeamField.parse(fields);
+        Page<MemberTeamDto> page = estimateTotal
+                ? coalescingMemberRepository.searchPageEstimated(condition, pageable, selected)
+                : coalescingMemberRepository.searchPageComplex(condition, pageable, selected);
+        return MemberTeamJacksonValue.of(page, selected);
+    }
+
+    /**
+     * 여러 검색 조건을 한 번에 받아 쿼리 하나로 실행한다. 응답은 요청 순서대로 조건마다 결과 목록 하나다.
+     * 조건은 querydsl.batch-search.max-conditions 개까지 받는다.
+     */
+    @PostMapping("/v1/members/batch")
+    public List<List<MemberTeamDto>> searchMembersBatch(@RequestBody List<MemberSearchCondition> conditions) {
+        if (conditions.size() > maxBatchConditions) {
+            throw new TooManyConditionsException(
+                    "at most " + maxBatchConditions + " conditions per batch, got " + conditions.size());
+        }
+        return memberJpaRepository.searchAll(conditions);
+    }
+
+    /**
+     * 비동기 버전. 요청 스레드는 바로 반납하고 쿼리는 DatabaseExecutor 에서 실행한다.
+     * 대기열이 가득 차면 503, spring.mvc.async.request-timeout 을 넘기면 쿼리를 취소하고 503 이다.
+     */
+    @GetMapping("/v1/members/async")
+    public DeferredResult<List<MemberTeamDto>> searchMemberV1Async(MemberSearchCondition condition) {
+        return defer(databaseExecutor.supply(() -> memberJpaRepository.search(condition)));
+    }
+
+    @GetMapping("/v2/members/async")
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV2Async(MemberSearchCondition condition, Pageable pageable) {
+        return defer(databaseExecutor.supply(() -> coalescingMemberRepository.searchPageSimple(condition, pageable)));
+    }
+
+    @GetMapping("/v3/members/async")
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable) {
+        return defer(databaseExecutor.supply(() -> coalescingMemberRepository.searchPageComplex(condition, pageable)));
+    }
+
+    /**
+     * 회원 전체 CSV 다운로드. 응답은 별도 스레드에서 스트리밍된다.
+     */
+    @GetMapping("/v1/members/export")
+    public ResponseEntity<StreamingResponseBody> exportMembers(@RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = out -> memberCsvExporter.export(out, gzip);
+        String fileName = gzip ? "members.csv.gz" : "members.csv";
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    /**
+     * CompletableFuture 를 그대로 돌려주면 시간 초과로 응답이 끝나도 쿼리는 계속 돈다.
+     * 시간 초과면 먼저 503 을 정해두고 future 를 취소한다. (대기 중이면 실행되지 않고, 실행 중이면 interrupt)
+     */
+    private static <T> DeferredResult<T> defer(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.onTimeout(() -> {
+            result.setErrorResult(new DatabaseBusyException("query timed out"));
+            future.cancel(true);
+        });
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(e);
+            }
+        });
+        return result;
     }
 }
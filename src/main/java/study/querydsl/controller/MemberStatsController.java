@@ -0,0 +1,64 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.stats.MemberStatistics;
+
+import java.util.Map;
+
+/**
+ * 회원 통계 근사값. 전체를 집계하지 않고 MemberStatistics 스케치에서 바로 답한다.
+ * ?q=0.5,0.9,0.99 로 나이 분위수를 고른다.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "querydsl.stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MemberStatsController {
+
+    private final MemberStatistics memberStatistics;
+
+    @GetMapping("/v1/stats/members")
+    public Map<String, Object> members(@RequestParam(defaultValue = "0.5,0.9,0.99") double[] q) {
+        return memberStatistics.global(quantiles(q));
+    }
+
+    @GetMapping("/v1/stats/teams")
+    public Map<Long, Map<String, Object>> teams(@RequestParam(defaultValue = "0.5,0.9,0.99") double[] q) {
+        return memberStatistics.teams(quantiles(q));
+    }
+
+    @GetMapping("/v1/stats/teams/{teamId}")
+    public ResponseEntity<Map<String, Object>> team(@PathVariable Long teamId,
+                                                    @RequestParam(defaultValue = "0.5,0.9,0.99") double[] q) {
+        Map<String, Object> stats = memberStatistics.team(teamId, quantiles(q));
+        return stats == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 전체를 다시 읽어 스케치를 새로 만든다. 삭제가 많았던 뒤 username 수를 바로잡을 때 쓴다.
+     */
+    @PostMapping("/v1/stats/rebuild")
+    public Map<String, Object> rebuild(@RequestParam(defaultValue = "0.5,0.9,0.99") double[] q) {
+        double[] quantiles = quantiles(q);
+        memberStatistics.rebuild();
+        return memberStatistics.global(quantiles);
+    }
+
+    /**
+     * 분위수는 0 이상 1 이하. 벗어나면 스케치까지 가지 않고 400 으로 돌려준다.
+     */
+    private static double[] quantiles(double[] q) {
+        for (double quantile : q) {
+            if (!(quantile >= 0 && quantile <= 1)) {
+                throw new InvalidQuantileException("q must be in [0, 1]: " + quantile);
+            }
+        }
+        return q;
+    }
+}
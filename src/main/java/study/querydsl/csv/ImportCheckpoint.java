@@ -0,0 +1,40 @@
+package study.querydsl.csv;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * CSV 가져오기가 어디까지 커밋했는지. 회원 insert 와 같은 트랜잭션에서 바꾸므로 둘은 항상 같이 커밋되거나 같이 롤백된다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class ImportCheckpoint {
+
+    //가져오는 파일의 절대 경로
+    @Id
+    @Column(length = 1024)
+    private String file;
+
+    //다음에 읽을 바이트 위치
+    private long committedOffset;
+
+    //커밋한 시점의 <파일>.rejects 크기. 그 뒤에 붙은 내용은 커밋되지 않은 구간의 것이다
+    private long rejectsLength;
+
+    ImportCheckpoint(String file) {
+        this.file = file;
+    }
+
+    void advance(long committedOffset, long rejectsLength) {
+        this.committedOffset = committedOffset;
+        this.rejectsLength = rejectsLength;
+    }
+}
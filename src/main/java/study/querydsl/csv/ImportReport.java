@@ -0,0 +1,24 @@
+package study.querydsl.csv;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * CSV 가져오기 결과. 건수는 이번 실행에서 처리한 것만 센다. (재시작 이전 실행분 제외)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ImportReport {
+
+    private final long imported;
+    private final long rejected;
+    private final long resumedFromOffset;
+    private final long committedOffset;
+    private final long elapsedMillis;
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? imported : imported * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,29 @@
+package study.querydsl.csv;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * --querydsl.import.file=partner.csv 로 기동하면 시작할 때 가져온다. 같은 옵션으로 다시 기동하면 이어서 가져온다.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "querydsl.import", name = "file")
+public class MemberCsvImportRunner implements ApplicationRunner {
+
+    private final MemberCsvImporter importer;
+
+    @Value("${querydsl.import.file}")
+    private String file;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        importer.importFile(Paths.get(file));
+    }
+}
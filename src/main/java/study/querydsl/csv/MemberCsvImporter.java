@@ -0,0 +1,387 @@
+package study.querydsl.csv;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * username,age,teamName 형식의 CSV 를 회원으로 가져온다.
+ * <p>
+ * 파일을 메모리 매핑해서 바이트를 직접 파싱한다. 나이는 바이트에서 바로 숫자로, 팀 이름은 바이트 그대로 팀 캐시에서 찾으므로
+ * String 은 username 에만 만든다. commit-interval 건마다 커밋하고 다음에 읽을 위치를 같은 트랜잭션에서
+ * {@link ImportCheckpoint} 에 기록하므로, 중간에 실패해도 같은 파일로 다시 호출하면 마지막 커밋 이후부터 이어서 가져온다.
+ * (커밋된 회원과 재시작 위치가 어긋나 같은 구간을 두 번 넣는 일이 없다)
+ * 형식이 틀린 행은 {@code <파일>.rejects} 에 원문 그대로 남긴다. 커밋 전에 쓰고 커밋된 길이를 체크포인트에 남겨서,
+ * 다시 시작할 때 커밋되지 않은 구간이 남긴 뒷부분을 잘라낸다.
+ * 따옴표로 감싼 필드 안의 쉼표, 줄바꿈, "" 이스케이프를 지원한다.
+ */
+@Slf4j
+@Component
+public class MemberCsvImporter {
+
+    private static final long MAX_WINDOW = 64L * 1024 * 1024;
+    private static final int MAX_FIELD_BYTES = 4096;
+    private static final long NO_TEAM = -2L;
+    private static final byte[] HEADER = "username,age,teamName".getBytes(StandardCharsets.US_ASCII);
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberJpaRepository memberJpaRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${querydsl.import.commit-interval:10000}")
+    private int commitInterval;
+
+    public MemberCsvImporter(EntityManager em, JPAQueryFactory queryFactory,
+                             MemberJpaRepository memberJpaRepository, PlatformTransactionManager transactionManager) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.memberJpaRepository = memberJpaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public ImportReport importFile(Path file) throws IOException {
+        return new ImportRun(file).run();
+    }
+
+    /**
+     * 한 번의 가져오기 실행 상태. 파싱용 버퍼를 재사용하므로 스레드 하나에서만 쓴다.
+     */
+    private class ImportRun {
+
+        private final Path file;
+        private final String checkpointKey;
+        private final Path rejectsFile;
+
+        private final TeamNameCache teams = new TeamNameCache();
+        private final byte[] usernameBytes = new byte[MAX_FIELD_BYTES];
+        private final byte[] teamBytes = new byte[MAX_FIELD_BYTES];
+        private final int[] fieldStart = new int[3];
+        private final int[] fieldEnd = new int[3];
+
+        private final List<Member> members = new ArrayList<>();
+        private long[] memberTeamIds = new long[16];
+        private final List<String> rejects = new ArrayList<>();
+
+        private long imported;
+        private long rejected;
+
+        ImportRun(Path file) {
+            this.file = file;
+            this.checkpointKey = file.toAbsolutePath().normalize().toString();
+            this.rejectsFile = file.resolveSibling(file.getFileName() + ".rejects");
+        }
+
+        ImportReport run() throws IOException {
+            long start = System.nanoTime();
+            long resumedFrom = resume();
+            loadTeams();
+
+            long committed = resumedFrom;
+            try (FileChannel channel = FileChannel.open(file, READ)) {
+                long size = channel.size();
+                long base = resumedFrom;
+                while (base < size) {
+                    long windowSize = Math.min(size - base, MAX_WINDOW);
+                    boolean lastWindow = base + windowSize == size;
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, windowSize);
+                    int limit = (int) windowSize;
+
+                    int pos = 0;
+                    while (pos < limit) {
+                        int lineEnd = lineEnd(window, pos, limit);
+                        if (lineEnd == limit && !lastWindow) {
+                            break; //다음 창에서 이 행부터 다시 매핑한다
+                        }
+                        parseLine(window, pos, lineEnd, base + pos == 0);
+                        pos = lineEnd + 1;
+
+                        if (members.size() + rejects.size() >= commitInterval) {
+                            committed = commit(base + Math.min(pos, limit), start);
+                        }
+                    }
+                    if (pos == 0) {
+                        throw new IOException("line longer than " + MAX_WINDOW + " bytes at offset " + base);
+                    }
+                    base += Math.min(pos, limit);
+                }
+                committed = commit(size, start);
+            }
+
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            ImportReport report = new ImportReport(imported, rejected, resumedFrom, committed, elapsed);
+            log.info("member csv import finished: {}", report);
+            return report;
+        }
+
+        private void parseLine(MappedByteBuffer buf, int from, int to, boolean firstLine) {
+            if (to > from && buf.get(to - 1) == '\r') {
+                to--;
+            }
+            if (to == from) {
+                return; //빈 줄
+            }
+            if (firstLine && isHeader(buf, from, to)) {
+                return;
+            }
+            int fields = splitFields(buf, from, to);
+            if (fields != 3) {
+                reject(buf, from, to);
+                return;
+            }
+            int usernameLength = copyField(buf, 0, usernameBytes);
+            int age = parseAge(buf);
+            int teamLength = copyField(buf, 2, teamBytes);
+            if (usernameLength <= 0 || age < 0 || teamLength < 0) {
+                reject(buf, from, to);
+                return;
+            }
+
+            long teamId = teamLength == 0 ? NO_TEAM : resolveTeam(teamLength);
+            if (members.size() == memberTeamIds.length) {
+                long[] grown = new long[memberTeamIds.length * 2];
+                System.arraycopy(memberTeamIds, 0, grown, 0, memberTeamIds.length);
+                memberTeamIds = grown;
+            }
+            memberTeamIds[members.size()] = teamId;
+            members.add(new Member(new String(usernameBytes, 0, usernameLength, StandardCharsets.UTF_8), age));
+        }
+
+        /**
+         * 팀 캐시에 없으면 팀을 바로 만든다. 새 팀은 드물어서 행마다 조회하지 않는 것이 중요하다.
+         */
+        private long resolveTeam(int length) {
+            long teamId = teams.find(teamBytes, length);
+            if (!TeamNameCache.isAbsent(teamId)) {
+                return teamId;
+            }
+            String name = new String(teamBytes, 0, length, StandardCharsets.UTF_8);
+            Team newTeam = transactionTemplate.execute(status -> {
+                Team t = new Team(name);
+                em.persist(t);
+                return t;
+            });
+            teams.put(name.getBytes(StandardCharsets.UTF_8), newTeam.getId());
+            return newTeam.getId();
+        }
+
+        /**
+         * 모은 회원과 다음 위치를 한 트랜잭션으로 커밋한다. 거절한 행은 그 전에 파일에 붙여 두고 커밋된 길이를 같이 남긴다.
+         */
+        private long commit(long offset, long start) throws IOException {
+            long rejectsLength = appendRejects();
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < members.size(); i++) {
+                    if (memberTeamIds[i] != NO_TEAM) {
+                        //getReference 는 select 없이 프록시만 만든다. changeTeam 을 쓰지 않아 team.members 도 건드리지 않는다.
+                        members.get(i).setTeam(em.getReference(Team.class, memberTeamIds[i]));
+                    }
+                }
+                memberJpaRepository.saveAll(members);
+
+                ImportCheckpoint checkpoint = em.find(ImportCheckpoint.class, checkpointKey);
+                if (checkpoint == null) {
+                    checkpoint = new ImportCheckpoint(checkpointKey);
+                    em.persist(checkpoint);
+                }
+                checkpoint.advance(offset, rejectsLength);
+            });
+            imported += members.size();
+            rejected += rejects.size();
+            members.clear();
+            rejects.clear();
+
+            long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            log.info("member csv import progress: offset={}, imported={}, rejected={}, {} rows/s",
+                    offset, imported, rejected, imported * 1000 / elapsed);
+            return offset;
+        }
+
+        /**
+         * 따옴표 밖의 '\n' 위치. 없으면 limit.
+         */
+        private int lineEnd(MappedByteBuffer buf, int from, int limit) {
+            boolean quoted = false;
+            for (int i = from; i < limit; i++) {
+                byte b = buf.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        private int splitFields(MappedByteBuffer buf, int from, int to) {
+            int count = 0;
+            int start = from;
+            boolean quoted = false;
+            for (int i = from; i <= to; i++) {
+                if (i < to) {
+                    byte b = buf.get(i);
+                    if (b == '"') {
+                        quoted = !quoted;
+                    }
+                    if (b != ',' || quoted) {
+                        continue;
+                    }
+                }
+                if (count == fieldStart.length) {
+                    return count + 1;
+                }
+                fieldStart[count] = start;
+                fieldEnd[count] = i;
+                count++;
+                start = i + 1;
+            }
+            return count;
+        }
+
+        /**
+         * 필드를 target 에 복사한다. 감싼 따옴표는 벗기고 "" 는 " 로 바꾼다. 너무 길면 -1.
+         */
+        private int copyField(MappedByteBuffer buf, int field, byte[] target) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            boolean quoted = to - from >= 2 && buf.get(from) == '"' && buf.get(to - 1) == '"';
+            if (quoted) {
+                from++;
+                to--;
+            }
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                byte b = buf.get(i);
+                if (quoted && b == '"' && i + 1 < to && buf.get(i + 1) == '"') {
+                    i++;
+                }
+                if (length == target.length) {
+                    return -1;
+                }
+                target[length++] = b;
+            }
+            return length;
+        }
+
+        /**
+         * 0 이상의 정수. 형식이 틀리면 -1.
+         */
+        private int parseAge(MappedByteBuffer buf) {
+            int from = fieldStart[1];
+            int to = fieldEnd[1];
+            while (from < to && buf.get(from) == ' ') {
+                from++;
+            }
+            while (to > from && buf.get(to - 1) == ' ') {
+                to--;
+            }
+            if (from == to || to - from > 9) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                byte b = buf.get(i);
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        /**
+         * 첫 줄이 헤더 행 전체와 같을 때만 건너뛴다. (username 이라는 회원은 가져온다)
+         */
+        private boolean isHeader(MappedByteBuffer buf, int from, int to) {
+            if (to - from != HEADER.length) {
+                return false;
+            }
+            for (int i = 0; i < HEADER.length; i++) {
+                if (buf.get(from + i) != HEADER[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void reject(MappedByteBuffer buf, int from, int to) {
+            byte[] line = new byte[to - from];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = buf.get(from + i);
+            }
+            rejects.add(new String(line, StandardCharsets.UTF_8));
+        }
+
+        private void loadTeams() {
+            List<Tuple> rows = queryFactory
+                    .select(team.id, team.name)
+                    .from(team)
+                    .fetch();
+            for (Tuple row : rows) {
+                String name = row.get(team.name);
+                if (name != null) {
+                    teams.put(name.getBytes(StandardCharsets.UTF_8), row.get(team.id));
+                }
+            }
+        }
+
+        /**
+         * 커밋된 위치를 읽고, 커밋되지 않은 구간이 rejects 파일에 남긴 뒷부분을 잘라낸다.
+         */
+        private long resume() throws IOException {
+            ImportCheckpoint checkpoint = transactionTemplate.execute(status -> em.find(ImportCheckpoint.class, checkpointKey));
+            long offset = checkpoint == null ? 0 : checkpoint.getCommittedOffset();
+            long rejectsLength = checkpoint == null ? 0 : checkpoint.getRejectsLength();
+            if (Files.exists(rejectsFile) && Files.size(rejectsFile) > rejectsLength) {
+                try (FileChannel channel = FileChannel.open(rejectsFile, WRITE)) {
+                    channel.truncate(rejectsLength);
+                }
+            }
+            if (offset > 0) {
+                log.info("member csv import resumes {} from offset {}", file, offset);
+            }
+            return offset;
+        }
+
+        /**
+         * 모은 거절 행을 rejects 파일에 붙이고(디스크까지 내린다) 파일 길이를 돌려준다.
+         */
+        private long appendRejects() throws IOException {
+            if (rejects.isEmpty()) {
+                return Files.exists(rejectsFile) ? Files.size(rejectsFile) : 0;
+            }
+            try (FileChannel channel = FileChannel.open(rejectsFile, CREATE, WRITE, APPEND);
+                 Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+                for (String line : rejects) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+                channel.force(false);
+                return channel.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.csv;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+/**
+ * 매일 밤 querydsl.export.directory 에 members-yyyy-MM-dd.csv(.gz) 를 만든다.
+ * 임시 파일에 다 쓴 다음 이름을 바꾸므로 읽는 쪽이 쓰다 만 파일을 보지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "querydsl.export", name = "directory")
+public class NightlyMemberExportJob {
+
+    private final MemberCsvExporter exporter;
+
+    @Value("${querydsl.export.directory}")
+    private String directory;
+
+    @Value("${querydsl.export.gzip:true}")
+    private boolean gzip;
+
+    @Scheduled(cron = "${querydsl.export.cron:0 0 3 * * *}")
+    public void export() throws IOException {
+        Path dir = Files.createDirectories(Paths.get(directory));
+        String fileName = "members-" + LocalDate.now() + (gzip ? ".csv.gz" : ".csv");
+        Path tmp = dir.resolve(fileName + ".tmp");
+
+        long rows = exporter.exportToFile(tmp, gzip);
+        Files.move(tmp, dir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("nightly member export written: {} ({} rows)", dir.resolve(fileName), rows);
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.csv;
+
+import java.util.Arrays;
+
+/**
+ * UTF-8 바이트로 팀 이름을 찾는 해시 테이블. 조회할 때 String 을 만들지 않는다. (open addressing)
+ */
+class TeamNameCache {
+
+    private static final long ABSENT = -1L;
+
+    private byte[][] names = new byte[64][];
+    private long[] ids = new long[64];
+    private int size;
+
+    long find(byte[] bytes, int length) {
+        int mask = names.length - 1;
+        for (int slot = hash(bytes, length) & mask; names[slot] != null; slot = (slot + 1) & mask) {
+            if (equals(names[slot], bytes, length)) {
+                return ids[slot];
+            }
+        }
+        return ABSENT;
+    }
+
+    void put(byte[] name, long id) {
+        if ((size + 1) * 2 > names.length) {
+            resize();
+        }
+        insert(name, id);
+    }
+
+    int size() {
+        return size;
+    }
+
+    static boolean isAbsent(long id) {
+        return id == ABSENT;
+    }
+
+    private void insert(byte[] name, long id) {
+        int mask = names.length - 1;
+        int slot = hash(name, name.length) & mask;
+        while (names[slot] != null) {
+            if (equals(names[slot], name, name.length)) {
+                ids[slot] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        names[slot] = name;
+        ids[slot] = id;
+        size++;
+    }
+
+    private void resize() {
+        byte[][] oldNames = names;
+        long[] oldIds = ids;
+        names = new byte[oldNames.length * 2][];
+        ids = new long[oldIds.length * 2];
+        size = 0;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                insert(oldNames[i], oldIds[i]);
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(byte[] name, byte[] bytes, int length) {
+        return name.length == length && Arrays.equals(name, 0, length, bytes, 0, length);
+    }
+}
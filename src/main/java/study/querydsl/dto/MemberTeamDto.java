@@ -1,9 +1,11 @@
 package study.querydsl.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
 
 @Data
+@JsonFilter(MemberTeamField.FILTER_ID)
 public class MemberTeamDto {
 
     private Long memberId;
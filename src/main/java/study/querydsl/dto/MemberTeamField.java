@@ -0,0 +1,82 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * MemberTeamDto 필드. ?fields=memberId,username 처럼 필요한 필드만 골라 받을 때 쓴다.
+ */
+public enum MemberTeamField {
+
+    MEMBER_ID("memberId", false),
+    USERNAME("username", false),
+    AGE("age", false),
+    TEAM_ID("teamId", false), //member.team_id 컬럼이라 team 조인이 필요 없다
+    TEAM_NAME("teamName", true);
+
+    public static final String FILTER_ID = "memberTeamFields";
+
+    private final String property;
+    private final boolean teamColumn;
+
+    MemberTeamField(String property, boolean teamColumn) {
+        this.property = property;
+        this.teamColumn = teamColumn;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public boolean isTeamColumn() {
+        return teamColumn;
+    }
+
+    public static Set<MemberTeamField> all() {
+        return EnumSet.allOf(MemberTeamField.class);
+    }
+
+    /**
+     * 비어 있으면 전체 필드
+     */
+    public static Set<MemberTeamField> parse(Collection<String> properties) {
+        if (properties == null || properties.isEmpty()) {
+            return all();
+        }
+        Set<MemberTeamField> fields = EnumSet.noneOf(MemberTeamField.class);
+        for (String property : properties) {
+            fields.add(of(property.trim()));
+        }
+        return fields;
+    }
+
+    /**
+     * MemberTeamDto 를 fields 만 남기고 직렬화하는 필터. MemberTeamJacksonValue 에 넣어 쓴다.
+     */
+    public static FilterProvider filters(Set<MemberTeamField> fields) {
+        Set<String> properties = fields.stream().map(MemberTeamField::getProperty).collect(Collectors.toSet());
+        return new SimpleFilterProvider().addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(properties));
+    }
+
+    /**
+     * 필드를 고르지 않은 응답에 쓰는 기본 필터. ObjectMapper 에 등록돼 있다. (QuerydslApplication)
+     */
+    public static FilterProvider allFields() {
+        return new SimpleFilterProvider().addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    private static MemberTeamField of(String property) {
+        for (MemberTeamField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new UnsupportedFieldException("unknown field: " + property);
+    }
+}
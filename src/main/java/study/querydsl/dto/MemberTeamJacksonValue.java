@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.Page;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ?fields= 필터를 붙인 MemberTeamDto 목록/페이지.
+ * <p>
+ * 컨버터는 응답을 고를 때 값이 아니라 클래스만 보므로, 안에 MemberTeamDto 가 들었다는 것을 타입으로 알린다.
+ * (MemberColumnarHttpMessageConverter 는 이 타입의 MappingJacksonValue 만 쓴다)
+ */
+public class MemberTeamJacksonValue extends MappingJacksonValue {
+
+    private MemberTeamJacksonValue(Object value, Set<MemberTeamField> fields) {
+        super(value);
+        setFilters(MemberTeamField.filters(fields));
+    }
+
+    public static MemberTeamJacksonValue of(List<MemberTeamDto> content, Set<MemberTeamField> fields) {
+        return new MemberTeamJacksonValue(content, fields);
+    }
+
+    public static MemberTeamJacksonValue of(Page<MemberTeamDto> page, Set<MemberTeamField> fields) {
+        return new MemberTeamJacksonValue(page, fields);
+    }
+}
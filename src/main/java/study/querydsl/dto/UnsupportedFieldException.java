@@ -0,0 +1,12 @@
+package study.querydsl.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnsupportedFieldException extends IllegalArgumentException {
+
+    public UnsupportedFieldException(String message) {
+        super(message);
+    }
+}
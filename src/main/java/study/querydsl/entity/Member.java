@@ -1,10 +1,20 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
@@ -12,7 +22,8 @@ import javax.persistence.*;
 public class Member {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50) //pooled: 시퀀스 한 번에 50개 할당
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -35,6 +46,12 @@ public class Member {
         }
     }
     public void changeTeam(Team team) {
+        Team previous = this.team;
         this.team = team;
-        team.getMembers().add(this);
+        //이전 팀 컬렉션은 이미 로딩돼 있을 때만 고친다. (큰 팀을 통째로 읽지 않는다)
+        if (previous != null && previous != team
+                && Hibernate.isInitialized(previous) && Hibernate.isInitialized(previous.getMembers())) {
+            previous.getMembers().remove(this);
+        }
+        team.getMembers().add(this); //inverse 컬렉션이라 로딩 전이면 add 는 로딩 없이 큐에 쌓인다
     } }
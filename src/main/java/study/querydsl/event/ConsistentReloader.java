@@ -0,0 +1,123 @@
+package study.querydsl.event;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link MemberChangeListener} 로 유지하는 메모리 구조를 DB 에서 통째로 다시 읽는 재시도 루프.
+ * <p>
+ * 읽기는 락 밖에서 하고, 읽기 전과 뒤의 modCount 가 같을 때만 락 안에서 바꿔 넣는다.
+ * (그사이 이벤트가 들어왔으면 읽은 값은 이미 낡았다)
+ * 3 번 모두 밀리면 포기하지 않고 백그라운드에서 다시 시도한다. 간격은 1초부터 두 배씩, 최대 1분.
+ * 재시도 스레드는 처음 필요할 때 만든다.
+ *
+ * @param <T> 한 번 읽은 결과
+ */
+@Slf4j
+public class ConsistentReloader<T> {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long FIRST_RETRY_DELAY_MILLIS = 1_000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    private final String name;
+    private final Object lock;
+    private final LongSupplier modCount;
+    private final LongFunction<T> loader;
+    private final Consumer<T> installer;
+
+    //아래 필드는 this 모니터로 보호한다
+    private ScheduledExecutorService retryExecutor;
+    private ScheduledFuture<?> retry;
+    private long retryDelayMillis = FIRST_RETRY_DELAY_MILLIS;
+    private boolean closed;
+
+    /**
+     * @param lock      modCount 를 보호하는 모니터. modCount 와 installer 는 이 락을 잡고 부른다
+     * @param loader    락 밖에서 부른다. 인자는 읽기 시작할 때의 modCount
+     * @param installer 읽는 동안 modCount 가 그대로일 때만 부른다
+     */
+    public ConsistentReloader(String name, Object lock, LongSupplier modCount,
+                              LongFunction<T> loader, Consumer<T> installer) {
+        this.name = name;
+        this.lock = lock;
+        this.modCount = modCount;
+        this.loader = loader;
+        this.installer = installer;
+    }
+
+    /**
+     * 바꿔 넣었으면 읽은 결과, 모두 밀렸으면 null 이다. (백그라운드 재시도가 예약된다)
+     */
+    public T reload() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long expected;
+            synchronized (lock) {
+                expected = modCount.getAsLong();
+            }
+            T loaded = loader.apply(expected);
+
+            synchronized (lock) {
+                if (modCount.getAsLong() != expected) {
+                    continue;
+                }
+                installer.accept(loaded);
+            }
+            succeeded();
+            return loaded;
+        }
+        scheduleRetry();
+        return null;
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+    }
+
+    private synchronized void succeeded() {
+        retryDelayMillis = FIRST_RETRY_DELAY_MILLIS;
+        if (retry != null) {
+            retry.cancel(false);
+            retry = null;
+        }
+    }
+
+    private synchronized void scheduleRetry() {
+        if (closed || retry != null) {
+            return;
+        }
+        if (retryExecutor == null) {
+            retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, name.replace(' ', '-') + "-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long delay = retryDelayMillis;
+        retryDelayMillis = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        log.warn("{} reload was overtaken by changes {} times, retrying in {}ms", name, MAX_ATTEMPTS, delay);
+        retry = retryExecutor.schedule(this::retry, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void retry() {
+        synchronized (this) {
+            retry = null;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("{} reload failed", name, e);
+            scheduleRetry();
+        }
+    }
+}
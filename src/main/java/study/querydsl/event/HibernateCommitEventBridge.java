@@ -0,0 +1,191 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 하이버네이트 post-commit insert/update/delete 이벤트를 {@link MemberChangeListener} 빈들에게 전달한다.
+ * 롤백된 변경은 전달되지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HibernateCommitEventBridge implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ObjectProvider<MemberChangeListener> listenerProvider;
+
+    private volatile List<MemberChangeListener> listeners;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * 벌크 연산 훅. 트랜잭션 안이면 커밋 이후에, 아니면 즉시 통지한다.
+     */
+    public void publishBulkOperation(Class<?> entityType) {
+        afterCommit(() -> publish(l -> l.onBulkOperation(entityType)));
+    }
+
+    /**
+     * 영속성 컨텍스트를 거치지 않고 JDBC 로 바꾼 회원 한 건을 통지한다. {@link #publishBulkOperation} 과 같은 규칙을 따른다.
+     */
+    public void publishMemberUpdated(MemberRow before, MemberRow after) {
+        afterCommit(() -> publish(l -> l.onMemberUpdated(before, after)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            MemberRow row = toRow((Member) entity);
+            publish(l -> l.onMemberInserted(row));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            publish(l -> l.onTeamChanged(team.getId(), team.getName()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            MemberRow before = toRow((Long) event.getId(), event.getPersister(), event.getOldState());
+            MemberRow after = toRow((Member) entity);
+            publish(l -> l.onMemberUpdated(before, after));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            publish(l -> l.onTeamChanged(team.getId(), team.getName()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            MemberRow row = toRow((Member) entity);
+            publish(l -> l.onMemberDeleted(row));
+        } else if (entity instanceof Team) {
+            Long teamId = (Long) event.getId();
+            publish(l -> l.onTeamDeleted(teamId));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Member.class || type == Team.class;
+    }
+
+    private void publish(Consumer<MemberChangeListener> action) {
+        for (MemberChangeListener listener : listeners()) {
+            try {
+                action.accept(listener);
+            } catch (RuntimeException e) {
+                //이미 커밋된 이후라 예외를 던져도 되돌릴 수 없다. 리스너 하나의 실패가 나머지를 막지 않도록 한다.
+                log.warn("member change listener failed: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private List<MemberChangeListener> listeners() {
+        List<MemberChangeListener> result = listeners;
+        if (result == null) {
+            result = listenerProvider.orderedStream().collect(Collectors.toList());
+            listeners = result;
+        }
+        return result;
+    }
+
+    private static MemberRow toRow(Member member) {
+        return new MemberRow(member.getId(), member.getUsername(), member.getAge(), teamId(member.getTeam()));
+    }
+
+    private static MemberRow toRow(Long id, EntityPersister persister, Object[] state) {
+        if (state == null) {
+            return null;
+        }
+        String[] names = persister.getPropertyNames();
+        String username = null;
+        int age = 0;
+        Long teamId = null;
+        for (int i = 0; i < names.length; i++) {
+            switch (names[i]) {
+                case "username":
+                    username = (String) state[i];
+                    break;
+                case "age":
+                    age = (Integer) state[i];
+                    break;
+                case "team":
+                    teamId = teamId((Team) state[i]);
+                    break;
+                default:
+            }
+        }
+        return new MemberRow(id, username, age, teamId);
+    }
+
+    /**
+     * 프록시를 초기화하지 않고 식별자만 꺼낸다. (커밋 이후라 지연 로딩을 일으키면 안 된다)
+     */
+    static Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.event;
+
+/**
+ * Member/Team 변경을 커밋 이후에 통지받는 리스너.
+ * 빈으로 등록하면 {@link HibernateCommitEventBridge} 가 자동으로 호출한다.
+ */
+public interface MemberChangeListener {
+
+    default void onMemberInserted(MemberRow row) {
+    }
+
+    /**
+     * @param before 변경 전 값, 준영속 엔티티를 merge 한 경우처럼 스냅샷이 없으면 null
+     */
+    default void onMemberUpdated(MemberRow before, MemberRow after) {
+    }
+
+    default void onMemberDeleted(MemberRow row) {
+    }
+
+    default void onTeamChanged(Long teamId, String name) {
+    }
+
+    default void onTeamDeleted(Long teamId) {
+    }
+
+    /**
+     * 벌크 update/delete 는 영속성 컨텍스트를 거치지 않아 엔티티 단위 이벤트가 없다. 대상 엔티티 타입만 알려준다.
+     */
+    default void onBulkOperation(Class<?> entityType) {
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 커밋된 Member 한 건의 컬럼 값 (엔티티나 프록시를 들고 다니지 않기 위해 값만 복사한다)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MemberRow {
+
+    private final Long memberId;
+    private final String username;
+    private final int age;
+    private final Long teamId;
+}
@@ -0,0 +1,389 @@
+package study.querydsl.index;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.ConsistentReloader;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.event.MemberRow;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색을 메모리에서 처리하는 인덱스.
+ * <p>
+ * 커밋된 변경만 반영한다. (post-commit 리스너 + 벌크 연산 훅)
+ * 변경은 맵에만 바로 넣고 스냅샷은 refresh-delay-ms 동안 모은 뒤 별도 스레드에서 다시 만든다.
+ * 그동안 조회는 이전 스냅샷을 그대로 읽으므로 변경이 몰려도 조회가 재구성 비용을 치르거나 락을 기다리지 않는다.
+ * (커밋된 변경이 검색에 보이기까지 최대 refresh-delay-ms 늦을 수 있다)
+ * 준비되지 않았거나 벌크 연산 뒤 재구성 중이면 {@link #isReady()} 가 false 이고 호출하는 쪽은 DB로 조회한다.
+ * 재구성이 변경에 계속 밀려도 백그라운드에서 다시 시도하므로 결국 다시 준비된다. ({@link ConsistentReloader})
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.search-index", name = "enabled", havingValue = "true")
+public class MemberSearchIndex implements MemberChangeListener {
+
+    private static final long NO_TEAM = -1L;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final long refreshDelayMillis;
+    private final ConsistentReloader<Loaded> reloader;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "member-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //아래 두 맵과 modCount, refreshScheduled 는 this 모니터로 보호한다
+    private final Map<Long, MemberRow> members = new HashMap<>();
+    private final Map<Long, String> teamNames = new HashMap<>();
+    private long modCount;
+    private boolean refreshScheduled;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean ready;
+
+    public MemberSearchIndex(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                             @Value("${querydsl.search-index.refresh-delay-ms:50}") long refreshDelayMillis) {
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        //벌크 연산 afterCommit 에서도 호출되므로 항상 새 트랜잭션으로 읽는다
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.refreshDelayMillis = refreshDelayMillis;
+        this.reloader = new ConsistentReloader<>("member search index", this, () -> modCount, this::loadAll, this::install);
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+        reloader.close();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * {@link #isReady()} 가 한 번이라도 true 가 된 뒤에 호출해야 한다.
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            throw new IllegalStateException("member search index is not built yet");
+        }
+        List<MemberTeamDto> result = new ArrayList<>();
+        int[] candidates = s.candidates(condition);
+        if (candidates == null) {
+            for (int pos = 0; pos < s.size(); pos++) {
+                if (s.matches(pos, condition)) {
+                    result.add(s.toDto(pos));
+                }
+            }
+        } else {
+            for (int pos : candidates) {
+                if (s.matches(pos, condition)) {
+                    result.add(s.toDto(pos));
+                }
+            }
+        }
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * DB 전체를 다시 읽어 인덱스를 만든다. 읽는 동안 이벤트가 들어오면 다시 시도한다.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        Loaded loaded = reloader.reload();
+        if (loaded != null) {
+            log.info("member search index rebuilt: members={}, teams={}, {}ms",
+                    loaded.members.size(), loaded.teams.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private Loaded loadAll(long version) {
+        Map<Long, MemberRow> loadedMembers = new HashMap<>();
+        Map<Long, String> loadedTeams = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> load(loadedMembers, loadedTeams));
+        return new Loaded(loadedMembers, loadedTeams, new Snapshot(version, loadedMembers.values(), loadedTeams));
+    }
+
+    private void install(Loaded loaded) {
+        members.clear();
+        members.putAll(loaded.members);
+        teamNames.clear();
+        teamNames.putAll(loaded.teams);
+        snapshot = loaded.snapshot;
+        ready = true;
+    }
+
+    void load(Map<Long, MemberRow> loadedMembers, Map<Long, String> loadedTeams) {
+        List<Tuple> teams = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .fetch();
+        for (Tuple tuple : teams) {
+            loadedTeams.put(tuple.get(team.id), tuple.get(team.name));
+        }
+
+        List<Tuple> rows = queryFactory
+                .select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .fetch();
+        for (Tuple tuple : rows) {
+            Long memberId = tuple.get(member.id);
+            loadedMembers.put(memberId, new MemberRow(memberId, tuple.get(member.username),
+                    tuple.get(member.age), tuple.get(member.team.id)));
+        }
+    }
+
+    @Override
+    public synchronized void onMemberInserted(MemberRow row) {
+        members.put(row.getMemberId(), row);
+        changed();
+    }
+
+    @Override
+    public synchronized void onMemberUpdated(MemberRow before, MemberRow after) {
+        members.put(after.getMemberId(), after);
+        changed();
+    }
+
+    @Override
+    public synchronized void onMemberDeleted(MemberRow row) {
+        members.remove(row.getMemberId());
+        changed();
+    }
+
+    @Override
+    public synchronized void onTeamChanged(Long teamId, String name) {
+        teamNames.put(teamId, name);
+        changed();
+    }
+
+    @Override
+    public synchronized void onTeamDeleted(Long teamId) {
+        teamNames.remove(teamId);
+        changed();
+    }
+
+    @Override
+    public void onBulkOperation(Class<?> entityType) {
+        if (entityType != Member.class && entityType != Team.class) {
+            return;
+        }
+        synchronized (this) {
+            ready = false;
+            changed();
+        }
+        rebuild();
+    }
+
+    private void changed() {
+        modCount++;
+        if (!refreshScheduled) {
+            refreshScheduled = true;
+            refresher.schedule(this::refreshSnapshot, refreshDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 지금까지 받은 변경으로 스냅샷을 다시 만든다. 맵 복사만 락 안에서 하고 정렬/색인은 락 밖에서 한다.
+     */
+    void refreshSnapshot() {
+        long version;
+        List<MemberRow> rows;
+        Map<Long, String> teams;
+        synchronized (this) {
+            refreshScheduled = false;
+            version = modCount;
+            rows = new ArrayList<>(members.values());
+            teams = new HashMap<>(teamNames);
+        }
+        Snapshot refreshed = new Snapshot(version, rows, teams);
+        synchronized (this) {
+            //rebuild 가 그사이 더 새 스냅샷을 넣었으면 되돌리지 않는다
+            if (snapshot == null || snapshot.version < version) {
+                snapshot = refreshed;
+            }
+        }
+    }
+
+    private static final class Loaded {
+
+        private final Map<Long, MemberRow> members;
+        private final Map<Long, String> teams;
+        private final Snapshot snapshot;
+
+        Loaded(Map<Long, MemberRow> members, Map<Long, String> teams, Snapshot snapshot) {
+            this.members = members;
+            this.teams = teams;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * 한 시점의 인덱스. 행 위치(position)는 memberId 오름차순이다.
+     */
+    private static final class Snapshot {
+
+        //만들 때의 modCount
+        private final long version;
+
+        private final long[] ids;
+        private final int[] ages;
+        private final long[] teamIds;
+        private final String[] usernames;
+        private final String[] teamNames;
+
+        //나이 오름차순으로 정렬한 행 위치와 그 나이
+        private final int[] agePositions;
+        private final int[] sortedAges;
+
+        private final Map<String, int[]> byUsername;
+        private final Map<String, int[]> byTeamName;
+
+        Snapshot(long version, Collection<MemberRow> rows, Map<Long, String> teams) {
+            this.version = version;
+            List<MemberRow> sorted = new ArrayList<>(rows);
+            sorted.sort(Comparator.comparing(MemberRow::getMemberId));
+
+            int n = sorted.size();
+            ids = new long[n];
+            ages = new int[n];
+            teamIds = new long[n];
+            usernames = new String[n];
+            teamNames = new String[n];
+            Map<String, List<Integer>> usernameLists = new HashMap<>();
+            Map<String, List<Integer>> teamNameLists = new HashMap<>();
+            for (int pos = 0; pos < n; pos++) {
+                MemberRow row = sorted.get(pos);
+                ids[pos] = row.getMemberId();
+                ages[pos] = row.getAge();
+                usernames[pos] = row.getUsername();
+                teamIds[pos] = row.getTeamId() == null ? NO_TEAM : row.getTeamId();
+                teamNames[pos] = row.getTeamId() == null ? null : teams.get(row.getTeamId());
+                if (usernames[pos] != null) {
+                    usernameLists.computeIfAbsent(usernames[pos], k -> new ArrayList<>()).add(pos);
+                }
+                if (teamNames[pos] != null) {
+                    teamNameLists.computeIfAbsent(teamNames[pos], k -> new ArrayList<>()).add(pos);
+                }
+            }
+            byUsername = toPositions(usernameLists);
+            byTeamName = toPositions(teamNameLists);
+
+            //(나이 << 32 | 위치) 를 정렬하면 나이, 같은 나이는 위치 순이 된다. (박싱 없이 기본형 정렬)
+            long[] keys = new long[n];
+            for (int pos = 0; pos < n; pos++) {
+                keys[pos] = ((long) ages[pos] << 32) | pos;
+            }
+            Arrays.sort(keys);
+            agePositions = new int[n];
+            sortedAges = new int[n];
+            for (int i = 0; i < n; i++) {
+                agePositions[i] = (int) keys[i];
+                sortedAges[i] = (int) (keys[i] >> 32);
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * 가장 선택도가 좋은 조건으로 후보 위치를 고른다. 오름차순이며, null 이면 전체를 훑어야 한다.
+         */
+        int[] candidates(MemberSearchCondition condition) {
+            int[] best = null;
+            if (hasText(condition.getUsername())) {
+                best = byUsername.getOrDefault(condition.getUsername(), NO_POSITIONS);
+            }
+            if (hasText(condition.getTeamName())) {
+                int[] byTeam = byTeamName.getOrDefault(condition.getTeamName(), NO_POSITIONS);
+                if (best == null || byTeam.length < best.length) {
+                    best = byTeam;
+                }
+            }
+            if (best != null || (condition.getAgeGoe() == null && condition.getAgeLoe() == null)) {
+                return best;
+            }
+
+            int from = condition.getAgeGoe() == null ? 0 : lowerBound(condition.getAgeGoe());
+            int to = condition.getAgeLoe() == null ? sortedAges.length : lowerBound(condition.getAgeLoe() + 1L);
+            if (from >= to) {
+                return NO_POSITIONS;
+            }
+            int[] range = Arrays.copyOfRange(agePositions, from, to);
+            Arrays.sort(range);
+            return range;
+        }
+
+        boolean matches(int pos, MemberSearchCondition condition) {
+            if (hasText(condition.getUsername()) && !condition.getUsername().equals(usernames[pos])) {
+                return false;
+            }
+            if (hasText(condition.getTeamName()) && !condition.getTeamName().equals(teamNames[pos])) {
+                return false;
+            }
+            if (condition.getAgeGoe() != null && ages[pos] < condition.getAgeGoe()) {
+                return false;
+            }
+            return condition.getAgeLoe() == null || ages[pos] <= condition.getAgeLoe();
+        }
+
+        MemberTeamDto toDto(int pos) {
+            Long teamId = teamIds[pos] == NO_TEAM ? null : teamIds[pos];
+            return new MemberTeamDto(ids[pos], usernames[pos], ages[pos], teamId, teamNames[pos]);
+        }
+
+        private int lowerBound(long age) {
+            int lo = 0;
+            int hi = sortedAges.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sortedAges[mid] < age) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static Map<String, int[]> toPositions(Map<String, List<Integer>> lists) {
+            Map<String, int[]> result = new HashMap<>(lists.size() * 2);
+            lists.forEach((key, positions) -> result.put(key, positions.stream().mapToInt(Integer::intValue).toArray()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package study.querydsl.index;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+import study.querydsl.event.ConsistentReloader;
+import study.querydsl.event.MemberChangeListener;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 전체를 메모리에 들고 있는 차원(dimension) 테이블.
+ * <p>
+ * 회원 검색은 member 컬럼과 team_id 만 읽고 팀 이름은 여기서 찾는다. (애플리케이션 hash join)
+ * teamName 조건은 team_id in (...) 으로 바뀐다.
+ * 스냅샷은 불변이고 변경이 오면 새로 만들어 통째로 바꾼다. 조회는 volatile 읽기 한 번이라 락이 없다.
+ * 커밋된 변경만 알고 있으므로 트랜잭션 안에서는 {@link #usableSnapshot()} 이 null 이고 SQL 조인을 쓴다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.team-dimension", name = "enabled", havingValue = "true")
+public class TeamDimension implements MemberChangeListener {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ConsistentReloader<Snapshot> reloader;
+
+    //쓰기(이벤트, 재적재)는 this 모니터로 직렬화하고 읽기는 snapshot 만 본다
+    private long modCount;
+    private volatile Snapshot snapshot;
+
+    public TeamDimension(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reloader = new ConsistentReloader<>("team dimension", this, () -> modCount, version -> load(),
+                loaded -> snapshot = loaded);
+    }
+
+    @PreDestroy
+    public void close() {
+        reloader.close();
+    }
+
+    /**
+     * 검색에 써도 되는 스냅샷. 아직 적재 전이거나 트랜잭션 안이면 null
+     */
+    public Snapshot usableSnapshot() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reload();
+    }
+
+    /**
+     * 팀 전체를 다시 읽는다. 읽는 동안 이벤트가 들어오면 다시 시도하고, 그래도 밀리면 백그라운드에서 다시 시도한다.
+     * (그동안 회원 검색은 SQL 로 team 을 조인한다)
+     */
+    public void reload() {
+        Snapshot loaded = reloader.reload();
+        if (loaded != null) {
+            log.info("team dimension loaded: teams={}", loaded.size());
+        }
+    }
+
+    private Snapshot load() {
+        Map<Long, String> names = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch()) {
+                names.put(tuple.get(team.id), tuple.get(team.name));
+            }
+        });
+        return new Snapshot(names);
+    }
+
+    @Override
+    public synchronized void onTeamChanged(Long teamId, String name) {
+        modCount++;
+        if (snapshot != null) {
+            Map<Long, String> names = new HashMap<>(snapshot.names);
+            names.put(teamId, name);
+            snapshot = new Snapshot(names);
+        }
+    }
+
+    @Override
+    public synchronized void onTeamDeleted(Long teamId) {
+        modCount++;
+        if (snapshot != null) {
+            Map<Long, String> names = new HashMap<>(snapshot.names);
+            names.remove(teamId);
+            snapshot = new Snapshot(names);
+        }
+    }
+
+    @Override
+    public void onBulkOperation(Class<?> entityType) {
+        if (entityType != Team.class) {
+            return;
+        }
+        synchronized (this) {
+            modCount++;
+            snapshot = null;
+        }
+        reload();
+    }
+
+    /**
+     * 한 시점의 팀 id -> 이름, 이름 -> id 목록. (팀 이름은 유일하지 않을 수 있다)
+     */
+    public static final class Snapshot {
+
+        private final Map<Long, String> names;
+        private final Map<String, Set<Long>> idsByName;
+
+        Snapshot(Map<Long, String> names) {
+            this.names = Collections.unmodifiableMap(new HashMap<>(names)); //이름이 null 인 팀도 있다
+            Map<String, Set<Long>> byName = new HashMap<>();
+            names.forEach((id, name) -> {
+                if (name != null) {
+                    byName.computeIfAbsent(name, k -> new TreeSet<>()).add(id);
+                }
+            });
+            byName.replaceAll((name, ids) -> Collections.unmodifiableSet(ids));
+            this.idsByName = Map.copyOf(byName);
+        }
+
+        /**
+         * teamId 가 null 이거나 모르는 팀이면 null
+         */
+        public String name(Long teamId) {
+            return teamId == null ? null : names.get(teamId);
+        }
+
+        /**
+         * 이름이 같은 팀 id, 없으면 빈 집합
+         */
+        public Set<Long> idsByName(String name) {
+            return idsByName.getOrDefault(name, Set.of());
+        }
+
+        /**
+         * 이름이 있는 팀의 이름 전체
+         */
+        public Set<String> names() {
+            return idsByName.keySet();
+        }
+
+        public int size() {
+            return names.size();
+        }
+    }
+}
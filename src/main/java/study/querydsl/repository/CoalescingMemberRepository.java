@@ -0,0 +1,128 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * MemberRepositoryCustom 앞에서 동시에 들어온 같은 검색을 쿼리 하나로 합친다. (single-flight)
+ * <p>
+ * 키는 정리된 조건(SearchConditionNormalizer) + pageable + fields 이다. 결과는 기다리던 호출 모두가 같은 객체를 받으므로 고치면 안 된다.
+ * 트랜잭션 안에서는 자기 변경이 보여야 하므로 합치지 않는다.
+ * 합쳐서 아낀 쿼리 수는 member.search.coalesced, 실제로 실행한 쿼리 수는 member.search.executed 로 남는다.
+ */
+@Component
+public class CoalescingMemberRepository implements MemberRepositoryCustom {
+
+    private final MemberRepository memberRepository;
+    private final SingleFlight<List<Object>, Object> singleFlight = new SingleFlight<>();
+    private final boolean enabled;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Metrics> metrics = new ConcurrentHashMap<>();
+
+    public CoalescingMemberRepository(MemberRepository memberRepository, MeterRegistry meterRegistry,
+                                      @Value("${querydsl.coalescing.enabled:true}") boolean enabled,
+                                      @Value("${querydsl.coalescing.timeout-ms:5000}") long timeoutMillis) {
+        this.memberRepository = memberRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        Gauge.builder("member.search.inflight", singleFlight, SingleFlight::inFlight)
+                .description("coalesced member searches currently running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return coalesce("search", condition, null, null, () -> memberRepository.search(condition));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return coalesce("searchPageSimple", condition, pageable, null,
+                () -> memberRepository.searchPageSimple(condition, pageable));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return searchPageComplex(condition, pageable, MemberTeamField.all());
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                 Set<MemberTeamField> fields) {
+        return coalesce("searchPageComplex", condition, pageable, fields,
+                () -> memberRepository.searchPageComplex(condition, pageable, fields));
+    }
+
+    @Override
+    public EstimatedPage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable,
+                                                            Set<MemberTeamField> fields) {
+        return coalesce("searchPageEstimated", condition, pageable, fields,
+                () -> memberRepository.searchPageEstimated(condition, pageable, fields));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String method, MemberSearchCondition condition, Pageable pageable,
+                           Set<MemberTeamField> fields, Supplier<T> query) {
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (!enabled || normalized == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        //List.of 는 null 을 받지 않는다
+        List<Object> key = List.of(method, normalized, pageable == null ? "" : pageable, fields == null ? "" : fields);
+        return (T) singleFlight.execute(key, (Supplier<Object>) query, timeout, metrics.computeIfAbsent(method, Metrics::new));
+    }
+
+    private final class Metrics implements SingleFlight.Listener {
+
+        private final Counter executed;
+        private final Counter coalesced;
+        private final Counter timedOut;
+
+        private Metrics(String method) {
+            this.executed = counter(method, "member.search.executed", "member searches sent to the database");
+            this.coalesced = counter(method, "member.search.coalesced", "member searches served by an identical in-flight query");
+            this.timedOut = counter(method, "member.search.coalesce.timeouts", "coalesced member searches that gave up waiting");
+        }
+
+        @Override
+        public void executed() {
+            executed.increment();
+        }
+
+        @Override
+        public void coalesced() {
+            coalesced.increment();
+        }
+
+        @Override
+        public void timedOut() {
+            timedOut.increment();
+        }
+
+        private Counter counter(String method, String name, String description) {
+            return Counter.builder(name)
+                    .description(description)
+                    .tag("method", method)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,26 +1,54 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPADeleteClause;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.event.HibernateCommitEventBridge;
+import study.querydsl.index.MemberSearchIndex;
+import study.querydsl.index.TeamDimension;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.*;
+import static study.querydsl.repository.MemberPredicates.*;
 
 @Repository
 @RequiredArgsConstructor
@@ -28,6 +56,15 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final HibernateCommitEventBridge eventBridge;
+    private final ObjectProvider<MemberSearchIndex> searchIndex;
+    private final ObjectProvider<TeamDimension> teamDimension;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Value("${querydsl.in-clause.chunk-size:512}")
+    private int inClauseChunkSize;
 
 //    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
 //        this.em = em;
@@ -39,11 +76,46 @@ public class MemberJpaRepository {
         em.persist(member);
     }
 
+    public void saveAll(Collection<Member> members) {
+        saveAll(members, batchSize);
+    }
+
+    /**
+     * batchSize 건마다 flush/clear 해서 JDBC 배치 insert 로 저장하고 영속성 컨텍스트가 커지지 않게 한다.
+     * 호출 전에 쌓여있던 변경도 함께 flush 되고, 끝나면 넘겨준 엔티티를 포함해 모두 준영속 상태가 된다.
+     * batchSize 가 0 이하면 배치를 끈 설정으로 보고 JDBC 배치 크기를 바꾸지 않고 끝에 한 번만 flush/clear 한다.
+     * 트랜잭션 안에서 호출해야 한다.
+     */
+    public void saveAll(Collection<Member> members, int batchSize) {
+        Session session = em.unwrap(Session.class);
+        Integer previous = session.getJdbcBatchSize();
+        if (batchSize > 0) {
+            session.setJdbcBatchSize(batchSize);
+        }
+        try {
+            int count = 0;
+            for (Member member : members) {
+                em.persist(member);
+                if (batchSize > 0 && ++count % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+        } finally {
+            session.setJdbcBatchSize(previous);
+        }
+    }
+
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    /**
+     * 전체를 한 번에 영속성 컨텍스트에 올린다. 건수가 많으면 {@link #forEachChunk} / {@link #streamChunks} 를 쓴다.
+     */
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class)
                 .getResultList();
@@ -55,9 +127,84 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    /**
+     * 회원 전체를 id 순서로 chunkSize 건씩 consumer 에 넘긴다.
+     * chunk 를 처리한 뒤 flush/clear 하므로 메모리에는 chunk 하나만 남는다. consumer 에서 바꾼 값도 그때 반영된다.
+     * 트랜잭션 안에서 호출해야 한다.
+     */
+    public void forEachChunk(int chunkSize, Consumer<List<Member>> consumer) {
+        streamChunks(chunkSize).forEach(consumer);
+    }
+
+    /**
+     * {@link #forEachChunk} 의 Stream 버전. 다음 chunk 는 앞 chunk 를 다 쓴 뒤에 조회한다.
+     * offset 대신 마지막 id 다음부터 읽으므로(keyset) 뒤쪽 chunk 도 인덱스로 바로 찾아간다.
+     */
+    public Stream<List<Member>> streamChunks(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        return Stream.iterate(fetchChunk(null, chunkSize), chunk -> !chunk.isEmpty(), chunk -> {
+            em.flush();
+            em.clear();
+            if (chunk.size() < chunkSize) {
+                return List.of();
+            }
+            return fetchChunk(chunk.get(chunk.size() - 1).getId(), chunkSize);
+        });
+    }
+
+    private List<Member> fetchChunk(Long lastId, int chunkSize) {
+        return queryFactory
+                .selectFrom(member)
+                .where(lastId == null ? null : member.id.gt(lastId))
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .setHint(HINT_CACHE_MODE, CacheMode.IGNORE) //전체 스캔으로 2차 캐시를 밀어내지 않는다
+                .fetch();
+    }
+
+    /**
+     * 팀원 수. team.members 를 읽지 않고 member.team_id 로 센다.
+     */
+    public long countByTeam(Long teamId) {
+        return queryFactory
+                .selectFrom(member)
+                .where(member.team.id.eq(teamId))
+                .fetchCount();
+    }
+
+    public boolean existsInTeam(Long teamId, Long memberId) {
+        Integer found = queryFactory
+                .selectOne()
+                .from(member)
+                .where(member.id.eq(memberId), member.team.id.eq(teamId))
+                .fetchFirst();
+        return found != null;
+    }
+
+    /**
+     * 팀원을 id 순서로 한 페이지. 전체 건수를 세지 않고 한 건 더 읽어 다음 페이지가 있는지만 본다.
+     */
+    public Slice<Member> findSliceByTeam(Long teamId, Pageable pageable) {
+        List<Member> content = queryFactory
+                .selectFrom(member)
+                .where(member.team.id.eq(teamId))
+                .orderBy(member.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1L)
+                .fetch();
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(HINT_CACHEABLE, true)
                 .getResultList();
     }
 
@@ -65,23 +212,71 @@ public class MemberJpaRepository {
         return queryFactory
                 .selectFrom(member)
                 .where(member.username.eq(username))
+                .setHint(HINT_CACHEABLE, true)
                 .fetch();
     }
 
+    public Map<String, List<Member>> findByUsernames(Collection<String> usernames) {
+        return findByUsernames(usernames, inClauseChunkSize);
+    }
+
+    /**
+     * 여러 username 을 in 절로 한꺼번에 찾는다. 결과는 넘겨준 순서대로 username 마다 회원 목록이고 없으면 빈 목록이다.
+     * <p>
+     * 중복은 한 번만 찾고 chunkSize 개씩 나눠 조회한다. (DB 의 in 목록/파라미터 수 제한)
+     * hibernate.query.in_clause_parameter_padding 으로 in 목록 길이가 2의 거듭제곱으로 채워지므로
+     * 목록 길이마다 다른 SQL 이 생기지 않고 쿼리 플랜/PreparedStatement 캐시에 몇 개만 남는다.
+     * 채워진 뒤에도 chunkSize 를 넘지 않도록 chunkSize 는 2의 거듭제곱으로 내림한다. (1000 -> 512)
+     * 결과는 넘겨준 이름과 정확히 같은 username 으로 묶는다. 대소문자/뒤 공백을 무시하는 collation 에서
+     * DB 가 더 넓게 맞춘 행은 어느 이름에도 넣지 않는다.
+     */
+    public Map<String, List<Member>> findByUsernames(Collection<String> usernames, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        int padded = Integer.highestOneBit(chunkSize);
+        Map<String, List<Member>> result = new LinkedHashMap<>();
+        for (String username : usernames) {
+            if (username != null) {
+                result.putIfAbsent(username, new ArrayList<>());
+            }
+        }
+
+        List<String> distinct = new ArrayList<>(result.keySet());
+        for (int from = 0; from < distinct.size(); from += padded) {
+            List<String> chunk = distinct.subList(from, Math.min(from + padded, distinct.size()));
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .where(member.username.in(chunk))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Member found : members) {
+                List<Member> group = result.get(found.getUsername());
+                if (group != null) {
+                    group.add(found);
+                }
+            }
+        }
+        return result;
+    }
+
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
 
-        BooleanBuilder builder = new BooleanBuilder();
-        if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return List.of();
         }
-        if (hasText(condition.getTeamName())) {
-            builder.and(member.team.name.eq(condition.getTeamName()));
+
+        BooleanBuilder builder = new BooleanBuilder();
+        if (hasText(normalized.getUsername())) {
+            builder.and(member.username.eq(normalized.getUsername()));
         }
-        if (condition.getAgeGoe() != null) {
-            builder.and(member.age.goe(condition.getAgeGoe()));
+        if (hasText(normalized.getTeamName())) {
+            builder.and(member.team.name.eq(normalized.getTeamName()));
         }
-        if (condition.getAgeLoe() != null) {
-            builder.and(member.age.goe(condition.getAgeLoe()));
+        BooleanExpression age = ageBetween(normalized.getAgeGoe(), normalized.getAgeLoe());
+        if (age != null) {
+            builder.and(age);
         }
 
         return queryFactory
@@ -99,39 +294,141 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return search(condition, MemberTeamField.all());
+    }
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+    /**
+     * fields 에 있는 필드만 조회한다. team 컬럼을 고르지 않았고 teamName 조건도 없으면 team 을 조인하지 않는다.
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition, Set<MemberTeamField> fields) {
+
+        //만족할 수 없는 조건이면 DB 에 가지 않는다
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return List.of();
+        }
+
+        //인덱스는 커밋된 데이터만 알고 있으므로 트랜잭션 안에서는 자기 변경을 보도록 DB로 조회한다
+        MemberSearchIndex index = searchIndex.getIfAvailable();
+        if (index != null && index.isReady() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return index.search(normalized);
+        }
+
+        //팀을 메모리에서 찾을 수 있으면 team 을 조인하지 않는다
+        TeamDimension dimension = teamDimension.getIfAvailable();
+        MemberTeamProjection projection = new MemberTeamProjection(fields,
+                dimension == null ? null : dimension.usableSnapshot());
+        if (projection.matchesNoTeam(normalized.getTeamName())) {
+            return List.of();
+        }
+        return projection.selectFrom(queryFactory, normalized.getTeamName() != null)
                 .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        usernameEq(normalized.getUsername()),
+                        projection.teamNameEq(normalized.getTeamName()),
+                        ageBetween(normalized.getAgeGoe(), normalized.getAgeLoe())
                 )
-                .fetch();
+                .fetch()
+                .stream()
+                .map(projection::toDto)
+                .collect(Collectors.toList());
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    /**
+     * 여러 조건을 쿼리 하나로 검색한다. 결과는 conditions 와 같은 순서이고 각각 member.id 순서다.
+     * <p>
+     * 정리한 조건(SearchConditionNormalizer)이 같으면 한 번만 넣고 결과 목록을 같이 쓴다. 만족할 수 없는 조건은 빈 목록이다.
+     * 남은 조건을 or 로 묶어 한 번 읽은 뒤 행마다 어느 조건에 맞는지 메모리에서 다시 나눈다.
+     * 메모리 인덱스를 쓸 수 있으면 DB 에 가지 않는다.
+     */
+    public List<List<MemberTeamDto>> searchAll(List<MemberSearchCondition> conditions) {
+        Map<MemberSearchCondition, List<MemberTeamDto>> results = new LinkedHashMap<>();
+        List<MemberSearchCondition> normalized = new ArrayList<>(conditions.size());
+        for (MemberSearchCondition condition : conditions) {
+            MemberSearchCondition n = SearchConditionNormalizer
+                    .normalize(condition == null ? new MemberSearchCondition() : condition)
+                    .orElse(null);
+            normalized.add(n);
+            if (n != null) {
+                results.putIfAbsent(n, new ArrayList<>());
+            }
+        }
+
+        MemberSearchIndex index = searchIndex.getIfAvailable();
+        if (index != null && index.isReady() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            results.replaceAll((condition, rows) -> index.search(condition));
+        } else if (!results.isEmpty()) {
+            fetchTagged(results);
+        }
+
+        return normalized.stream()
+                .map(n -> n == null ? List.<MemberTeamDto>of() : results.get(n))
+                .collect(Collectors.toList());
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    private void fetchTagged(Map<MemberSearchCondition, List<MemberTeamDto>> results) {
+        TeamDimension dimension = teamDimension.getIfAvailable();
+        MemberTeamProjection projection = new MemberTeamProjection(MemberTeamField.all(),
+                dimension == null ? null : dimension.usableSnapshot());
+
+        BooleanBuilder any = new BooleanBuilder();
+        boolean matchAll = false;
+        boolean teamFiltered = false;
+        for (MemberSearchCondition condition : results.keySet()) {
+            if (projection.matchesNoTeam(condition.getTeamName())) {
+                continue;
+            }
+            Predicate predicate = ExpressionUtils.allOf(
+                    usernameEq(condition.getUsername()),
+                    projection.teamNameEq(condition.getTeamName()),
+                    ageBetween(condition.getAgeGoe(), condition.getAgeLoe()));
+            if (predicate == null) {
+                matchAll = true; //조건 없는 검색이 하나라도 있으면 전체를 읽는다
+            } else {
+                any.or(predicate);
+            }
+            teamFiltered |= condition.getTeamName() != null;
+        }
+        if (!matchAll && !any.hasValue()) {
+            return;
+        }
+
+        List<MemberTeamDto> rows = projection.selectFrom(queryFactory, teamFiltered)
+                .where(matchAll ? null : any)
+                .orderBy(member.id.asc())
+                .fetch()
+                .stream()
+                .map(projection::toDto)
+                .collect(Collectors.toList());
+        for (MemberTeamDto row : rows) {
+            results.forEach((condition, matched) -> {
+                if (matches(condition, row)) {
+                    matched.add(row);
+                }
+            });
+        }
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    /**
+     * 벌크 update. 영속성 컨텍스트를 거치지 않으므로 실행 전에 flush, 실행 후에 clear 하고
+     * 커밋 이후 {@link study.querydsl.event.MemberChangeListener#onBulkOperation} 으로 알린다.
+     * 트랜잭션 안에서 호출해야 한다.
+     */
+    public long bulkUpdate(EntityPath<?> entity, UnaryOperator<JPAUpdateClause> clause) {
+        em.flush();
+        long count = clause.apply(queryFactory.update(entity)).execute();
+        em.clear();
+        eventBridge.publishBulkOperation(entity.getType());
+        return count;
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    /**
+     * 벌크 delete. {@link #bulkUpdate} 와 같은 규칙을 따른다.
+     */
+    public long bulkDelete(EntityPath<?> entity, UnaryOperator<JPADeleteClause> clause) {
+        em.flush();
+        long count = clause.apply(queryFactory.delete(entity)).execute();
+        em.clear();
+        eventBridge.publishBulkOperation(entity.getType());
+        return count;
     }
 }
@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 정리된 검색 조건(SearchConditionNormalizer)의 where 절 조각. 비어 있는 조건은 null 이라 where(...) 에서 빠진다.
+ * 저장소마다 같은 규칙을 쓰도록 여기 한 곳에만 둔다. {@link #matches} 는 같은 규칙을 메모리의 한 행에 적용한다.
+ */
+public final class MemberPredicates {
+
+    private MemberPredicates() {
+    }
+
+    public static BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    /**
+     * team 을 조인한 쿼리에서 쓴다. (팀 스냅샷이 있으면 MemberTeamProjection.teamNameEq)
+     */
+    public static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    /**
+     * 나이 범위를 eq 또는 between 하나로 만든다. 한쪽만 있으면 goe/loe 이다.
+     */
+    public static BooleanExpression ageBetween(Integer ageGoe, Integer ageLoe) {
+        if (ageGoe != null && ageLoe != null) {
+            return ageGoe.equals(ageLoe) ? member.age.eq(ageGoe) : member.age.between(ageGoe, ageLoe);
+        }
+        if (ageGoe != null) {
+            return member.age.goe(ageGoe);
+        }
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    /**
+     * 위 조건들을 조회한 한 행에 적용한다. SQL 로 거른 결과와 같다.
+     */
+    public static boolean matches(MemberSearchCondition condition, MemberTeamDto row) {
+        if (condition.getUsername() != null && !condition.getUsername().equals(row.getUsername())) {
+            return false;
+        }
+        if (condition.getTeamName() != null && !condition.getTeamName().equals(row.getTeamName())) {
+            return false;
+        }
+        if (condition.getAgeGoe() != null && row.getAge() < condition.getAgeGoe()) {
+            return false;
+        }
+        return condition.getAgeLoe() == null || row.getAge() <= condition.getAgeLoe();
+    }
+}
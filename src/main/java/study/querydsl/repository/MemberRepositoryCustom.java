@@ -2,10 +2,13 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.EstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
 
 import java.util.List;
+import java.util.Set;
 
 public interface MemberRepositoryCustom {
 
@@ -14,4 +17,16 @@ public interface MemberRepositoryCustom {
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
 
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * fields 에 있는 필드만 조회한다. 필요 없으면 team 을 조인하지 않는다.
+     */
+    Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, Set<MemberTeamField> fields);
+
+    /**
+     * {@link #searchPageComplex(MemberSearchCondition, Pageable, Set)} 와 같지만 조건이 없거나 넓으면
+     * 전체 건수를 세지 않고 회원 통계로 추정한다. 추정했는지는 {@link EstimatedPage#isTotalEstimated()} 로 알 수 있다.
+     */
+    EstimatedPage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable,
+                                                     Set<MemberTeamField> fields);
 }
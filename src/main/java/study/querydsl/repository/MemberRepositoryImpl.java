@@ -1,130 +1,171 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.EstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.Member;
+import study.querydsl.index.MemberSearchIndex;
+import study.querydsl.index.TeamDimension;
+import study.querydsl.stats.MemberStatistics;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Collectors;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberPredicates.ageBetween;
+import static study.querydsl.repository.MemberPredicates.usernameEq;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em) {
+    private final ObjectProvider<MemberSearchIndex> searchIndex;
+    private final ObjectProvider<TeamDimension> teamDimension;
+    private final ObjectProvider<MemberStatistics> memberStatistics;
+    private final MemberSortResolver sortResolver;
+    private final long exactCountBelow;
+
+    public MemberRepositoryImpl(EntityManager em, ObjectProvider<MemberSearchIndex> searchIndex,
+                                ObjectProvider<TeamDimension> teamDimension,
+                                ObjectProvider<MemberStatistics> memberStatistics, MemberSortResolver sortResolver,
+                                @Value("${querydsl.estimated-count.exact-below:10000}") long exactCountBelow) {
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchIndex = searchIndex;
+        this.teamDimension = teamDimension;
+        this.memberStatistics = memberStatistics;
+        this.sortResolver = sortResolver;
+        this.exactCountBelow = exactCountBelow;
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return List.of();
+        }
+
+        MemberSearchIndex index = searchIndex.getIfAvailable();
+        if (index != null && index.isReady() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return index.search(normalized);
+        }
+
+        MemberTeamProjection projection = new MemberTeamProjection(MemberTeamField.all(), teamSnapshot());
+        if (projection.matchesNoTeam(normalized.getTeamName())) {
+            return List.of();
+        }
+        return where(projection.selectFrom(queryFactory, normalized.getTeamName() != null), projection, normalized)
+                .fetch()
+                .stream()
+                .map(projection::toDto)
+                .collect(Collectors.toList());
     }
 
+    /**
+     * 내용과 건수를 따로 읽는다. 건수 쿼리는 teamName 으로 거를 때만 team 을 조인한다. ({@link #searchPageComplex})
+     */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return searchPageComplex(condition, pageable);
+    }
 
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+    @Override
+    public Page <MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return searchPageComplex(condition, pageable, MemberTeamField.all());
+    }
 
-        return new PageImpl<>(content, pageable, total);
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                 Set<MemberTeamField> fields) {
+        EstimatedPage<MemberTeamDto> page = complexPage(condition, pageable, fields, false);
+        return new PageImpl<>(page.getContent(), pageable, page.getTotalElements());
     }
 
     @Override
-    public Page <MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+    public EstimatedPage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable,
+                                                            Set<MemberTeamField> fields) {
+        return complexPage(condition, pageable, fields, true);
+    }
+
+    private EstimatedPage<MemberTeamDto> complexPage(MemberSearchCondition condition, Pageable pageable,
+                                                     Set<MemberTeamField> fields, boolean estimate) {
+
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return new EstimatedPage<>(List.of(), pageable, 0, false);
+        }
+
+        TeamDimension.Snapshot teams = teamSnapshot();
+        MemberTeamProjection projection = new MemberTeamProjection(fields, teams);
+        if (projection.matchesNoTeam(normalized.getTeamName())) {
+            return new EstimatedPage<>(List.of(), pageable, 0, false);
+        }
+        boolean teamFiltered = normalized.getTeamName() != null;
+        List<MemberTeamDto> content = where(projection.selectFrom(queryFactory, teamFiltered), projection, normalized)
+                .orderBy(sortResolver.resolve(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetch();
-
-        long total = queryFactory
+                .fetch()
+                .stream()
+                .map(projection::toDto)
+                .collect(Collectors.toList());
+
+        if (estimate) {
+            //마지막 페이지면 세지 않아도 정확히 안다
+            if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0 || !content.isEmpty())) {
+                return new EstimatedPage<>(content, pageable, pageable.getOffset() + content.size(), false);
+            }
+            MemberStatistics statistics = memberStatistics.getIfAvailable();
+            OptionalLong estimated = statistics == null ? OptionalLong.empty() : statistics.estimateCount(normalized);
+            if (estimated.isPresent() && estimated.getAsLong() >= exactCountBelow) {
+                //통계는 커밋된 변경만 알고 근사값이라 이미 읽은 행보다 작을 수 있다
+                long total = Math.max(estimated.getAsLong(), pageable.getOffset() + content.size() + 1);
+                return new EstimatedPage<>(content, pageable, total, true);
+            }
+        }
+
+        //member -> team 은 다대일이라 left join 이 건수를 바꾸지 않는다. teamName 으로 거를 때만 조인한다
+        JPAQuery<Member> countQuery = queryFactory
                 .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
+                .from(member);
+        if (teamFiltered && teams == null) {
+            countQuery.leftJoin(member.team, team);
+        }
+        long total = countQuery
                 .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        usernameEq(normalized.getUsername()),
+                        projection.teamNameEq(normalized.getTeamName()),
+                        ageBetween(normalized.getAgeGoe(), normalized.getAgeLoe())
                 )
                 .fetchCount();
 
-        return new PageImpl<>(content, pageable, total);
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return new EstimatedPage<>(content, pageable, total, false);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    private <T> JPAQuery<T> where(JPAQuery<T> query, MemberTeamProjection projection, MemberSearchCondition condition) {
+        return query.where(
+                usernameEq(condition.getUsername()),
+                projection.teamNameEq(condition.getTeamName()),
+                ageBetween(condition.getAgeGoe(), condition.getAgeLoe())
+        );
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    /**
+     * team 을 메모리에서 찾아도 되면 팀 스냅샷, 아니면 null (SQL 조인)
+     */
+    private TeamDimension.Snapshot teamSnapshot() {
+        TeamDimension dimension = teamDimension.getIfAvailable();
+        return dimension == null ? null : dimension.usableSnapshot();
     }
 }
@@ -0,0 +1,132 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Pageable 의 Sort 를 Querydsl OrderSpecifier 로 바꾼다.
+ * <p>
+ * 클라이언트가 인덱스 없는 정렬로 테이블 전체 filesort 를 일으키지 못하게 인덱스가 있는 컬럼 하나만 정렬 키로 받는다.
+ * (member.id 로 동점을 정리하면 단일 컬럼 인덱스 순서와 같아서 인덱스를 그대로 탄다)
+ * 인덱스가 받쳐주지 못하는 정렬은 strict 모드면 거절하고, 아니면 버린다(downgrade).
+ * 어떤 경우에도 마지막에 member.id 를 붙여 페이지 사이 순서가 안정적이다.
+ */
+@Slf4j
+@Component
+public class MemberSortResolver {
+
+    private static final String TIEBREAKER = "memberId";
+
+    //MemberTeamDto 필드 -> 인덱스가 있는 정렬 대상
+    private static final Map<String, ComparableExpressionBase<?>> INDEXED = Map.of(
+            "memberId", member.id,
+            "username", member.username,
+            "age", member.age,
+            "teamId", member.team.id
+    );
+
+    //정렬 가능한 필드지만 인덱스로 받쳐줄 수 없는 것 (조인 너머 컬럼)
+    private static final Map<String, ComparableExpressionBase<?>> UNINDEXED = Map.of(
+            "teamName", team.name
+    );
+
+    //DB 정렬과 같은 순서로 메모리에서 합칠 때 쓴다 (샤드 scatter-gather)
+    private static final Map<String, Function<MemberTeamDto, Comparable<?>>> FIELDS = Map.of(
+            "memberId", MemberTeamDto::getMemberId,
+            "username", MemberTeamDto::getUsername,
+            "age", MemberTeamDto::getAge,
+            "teamId", MemberTeamDto::getTeamId
+    );
+
+    @Value("${querydsl.sort.strict:false}")
+    private boolean strict;
+
+    public OrderSpecifier<?>[] resolve(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : effectiveOrders(sort)) {
+            ComparableExpressionBase<?> path = INDEXED.get(order.getProperty());
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+        }
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    /**
+     * {@link #resolve} 와 같은 순서를 내는 비교자. null 은 H2 처럼 가장 작은 값으로 본다.
+     */
+    public Comparator<MemberTeamDto> comparator(Sort sort) {
+        Comparator<MemberTeamDto> result = null;
+        for (Sort.Order order : effectiveOrders(sort)) {
+            Function<MemberTeamDto, Comparable<?>> field = FIELDS.get(order.getProperty());
+            Comparator<MemberTeamDto> next = (a, b) -> compareNullsFirst(field.apply(a), field.apply(b));
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            result = result == null ? next : result.thenComparing(next);
+        }
+        return result;
+    }
+
+    /**
+     * 실제로 적용할 정렬: 인덱스 있는 키 최대 하나 + member.id
+     */
+    private List<Sort.Order> effectiveOrders(Sort sort) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (!INDEXED.containsKey(order.getProperty())) {
+                if (!UNINDEXED.containsKey(order.getProperty())) {
+                    throw new UnsupportedSortException("unknown sort property: " + order.getProperty());
+                }
+                downgrade("sort by " + order.getProperty() + " is not supported by an index");
+                continue;
+            }
+            if (!orders.isEmpty()) {
+                downgrade("only one sort property is supported, ignoring " + order.getProperty());
+                continue;
+            }
+            orders.add(order.isAscending() ? Sort.Order.asc(order.getProperty()) : Sort.Order.desc(order.getProperty()));
+        }
+
+        if (orders.isEmpty()) {
+            orders.add(Sort.Order.asc(TIEBREAKER));
+        } else if (!orders.get(0).getProperty().equals(TIEBREAKER)) {
+            //정렬 키와 같은 방향이어야 (key, id) 인덱스 순서를 그대로 쓸 수 있다
+            orders.add(orders.get(0).isAscending() ? Sort.Order.asc(TIEBREAKER) : Sort.Order.desc(TIEBREAKER));
+        }
+        return orders;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareNullsFirst(Comparable<?> a, Comparable<?> b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private void downgrade(String message) {
+        if (strict) {
+            throw new UnsupportedSortException(message);
+        }
+        log.debug("{}", message);
+    }
+}
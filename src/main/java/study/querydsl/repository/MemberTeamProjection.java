@@ -0,0 +1,111 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.index.TeamDimension;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 요청한 MemberTeamDto 필드만 select 하는 쿼리를 만든다.
+ * <p>
+ * teamId 는 member.team.id 로 읽어서 member.team_id 컬럼을 그대로 쓴다.
+ * team 조인은 teamName 을 select 하거나 teamName 으로 거를 때만 건다.
+ * 고르지 않은 필드는 DTO 에서 null(age 는 0)이고 응답에서는 Jackson 필터로 빠진다.
+ * <p>
+ * 팀 스냅샷(TeamDimension)을 주면 team 을 아예 조인하지 않는다. teamName 은 select 한 team_id 로 스냅샷에서 찾고
+ * teamName 조건은 team_id in (...) 으로 바꾼다.
+ */
+class MemberTeamProjection {
+
+    private static final Map<MemberTeamField, Expression<?>> EXPRESSIONS = new EnumMap<>(MemberTeamField.class);
+
+    static {
+        EXPRESSIONS.put(MemberTeamField.MEMBER_ID, member.id);
+        EXPRESSIONS.put(MemberTeamField.USERNAME, member.username);
+        EXPRESSIONS.put(MemberTeamField.AGE, member.age);
+        EXPRESSIONS.put(MemberTeamField.TEAM_ID, member.team.id);
+        EXPRESSIONS.put(MemberTeamField.TEAM_NAME, team.name);
+    }
+
+    private final Set<MemberTeamField> fields;
+    private final TeamDimension.Snapshot teams;
+    private final Expression<?>[] select;
+
+    /**
+     * @param teams null 이면 SQL 로 team 을 조인한다
+     */
+    MemberTeamProjection(Set<MemberTeamField> fields, TeamDimension.Snapshot teams) {
+        this.fields = fields.isEmpty() ? MemberTeamField.all() : fields;
+        this.teams = teams;
+        Set<Expression<?>> expressions = new LinkedHashSet<>();
+        for (MemberTeamField field : this.fields) {
+            expressions.add(teams != null && field == MemberTeamField.TEAM_NAME ? member.team.id : EXPRESSIONS.get(field));
+        }
+        this.select = expressions.toArray(new Expression<?>[0]);
+    }
+
+    /**
+     * select ... from member [left join member.team team]
+     */
+    JPAQuery<Tuple> selectFrom(JPAQueryFactory queryFactory, boolean teamFiltered) {
+        JPAQuery<Tuple> query = queryFactory
+                .select(select)
+                .from(member);
+        return teams == null && needsTeamJoin(this.fields, teamFiltered) ? query.leftJoin(member.team, team) : query;
+    }
+
+    /**
+     * teamName 조건. 스냅샷이 있으면 team_id in (...) 이다. 그런 팀이 없으면 {@link #matchesNoTeam} 으로 먼저 거른다.
+     */
+    BooleanExpression teamNameEq(String teamName) {
+        if (!hasText(teamName)) {
+            return null;
+        }
+        return teams == null ? MemberPredicates.teamNameEq(teamName) : member.team.id.in(teams.idsByName(teamName));
+    }
+
+    /**
+     * 스냅샷에 없는 팀 이름이라 DB 에 가지 않아도 결과가 없다
+     */
+    boolean matchesNoTeam(String teamName) {
+        return teams != null && hasText(teamName) && teams.idsByName(teamName).isEmpty();
+    }
+
+    MemberTeamDto toDto(Tuple tuple) {
+        Integer age = get(tuple, MemberTeamField.AGE, member.age);
+        return new MemberTeamDto(
+                get(tuple, MemberTeamField.MEMBER_ID, member.id),
+                get(tuple, MemberTeamField.USERNAME, member.username),
+                age == null ? 0 : age,
+                get(tuple, MemberTeamField.TEAM_ID, member.team.id),
+                teamName(tuple));
+    }
+
+    private String teamName(Tuple tuple) {
+        if (!fields.contains(MemberTeamField.TEAM_NAME)) {
+            return null;
+        }
+        return teams == null ? tuple.get(team.name) : teams.name(tuple.get(member.team.id)); //hash join
+    }
+
+    static boolean needsTeamJoin(Set<MemberTeamField> fields, boolean teamFiltered) {
+        return teamFiltered || fields.stream().anyMatch(MemberTeamField::isTeamColumn);
+    }
+
+    private <T> T get(Tuple tuple, MemberTeamField field, Expression<T> expression) {
+        return fields.contains(field) ? tuple.get(expression) : null;
+    }
+}
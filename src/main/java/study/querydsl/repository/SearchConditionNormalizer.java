@@ -0,0 +1,56 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Optional;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 검색 조건을 쿼리로 만들기 전에 정리한다.
+ * <ul>
+ *     <li>빈 문자열 조건, 항상 참인 나이 경계(Integer.MIN_VALUE 이상, Integer.MAX_VALUE 이하)는 버린다.</li>
+ *     <li>ageGoe == ageLoe 는 eq, 둘 다 있으면 between 한 번으로 만든다. ({@code ageBetween})</li>
+ *     <li>ageGoe > ageLoe 처럼 어떤 행도 만족할 수 없으면 빈 Optional 을 돌려준다. 호출하는 쪽은 DB 를 거치지 않고 빈 결과를 돌려준다.</li>
+ * </ul>
+ * 결과는 새 MemberSearchCondition 이고 넘겨받은 조건은 바꾸지 않는다. 같은 뜻의 조건은 equals 도 같다.
+ */
+public final class SearchConditionNormalizer {
+
+    //username, team.name 컬럼 길이 (@Column 기본값 varchar(255)). 이보다 긴 값과 같은 행은 없다
+    static final int MAX_NAME_LENGTH = 255;
+
+    private SearchConditionNormalizer() {
+    }
+
+    public static Optional<MemberSearchCondition> normalize(MemberSearchCondition condition) {
+        String username = hasText(condition.getUsername()) ? condition.getUsername() : null;
+        String teamName = hasText(condition.getTeamName()) ? condition.getTeamName() : null;
+        if (tooLong(username) || tooLong(teamName)) {
+            return Optional.empty();
+        }
+
+        Integer ageGoe = condition.getAgeGoe();
+        Integer ageLoe = condition.getAgeLoe();
+        if (ageGoe != null && ageGoe == Integer.MIN_VALUE) {
+            ageGoe = null;
+        }
+        if (ageLoe != null && ageLoe == Integer.MAX_VALUE) {
+            ageLoe = null;
+        }
+        if (ageGoe != null && ageLoe != null && ageGoe > ageLoe) {
+            return Optional.empty();
+        }
+
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(username);
+        normalized.setTeamName(teamName);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return Optional.of(normalized);
+    }
+
+    private static boolean tooLong(String value) {
+        return value != null && value.length() > MAX_NAME_LENGTH;
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import study.querydsl.async.DatabaseBusyException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나로 합친다. 처음 온 호출만 loader 를 실행하고,
+ * 그동안 같은 키로 온 호출은 그 결과(또는 예외)를 같이 받는다. 끝나면 바로 잊으므로 캐시가 아니다.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    interface Listener {
+
+        void executed();
+
+        void coalesced();
+
+        void timedOut();
+    }
+
+    /**
+     * @param timeout 다른 호출의 결과를 기다리는 최대 시간. 넘기면 {@link DatabaseBusyException}
+     */
+    V execute(K key, Supplier<V> loader, Duration timeout, Listener listener) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            listener.coalesced();
+            return await(existing, timeout, listener);
+        }
+
+        listener.executed();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> future, Duration timeout, Listener listener) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            listener.timedOut();
+            throw new DatabaseBusyException("timed out after " + timeout.toMillis() + "ms waiting for an identical query");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for an identical query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
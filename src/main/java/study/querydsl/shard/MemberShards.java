@@ -0,0 +1,211 @@
+package study.querydsl.shard;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Member/Team 을 team 단위로 나눠 담는 샤드 DB 들.
+ * <p>
+ * 샤드마다 DataSource, EntityManagerFactory, 트랜잭션 매니저를 따로 둔다. (기본 DataSource 와는 별개)
+ * 식별자 상위 비트에 샤드 번호를 넣어서(샤드 i 의 시퀀스는 i << 40 부터 시작) 식별자만 보고 샤드를 찾는다.
+ * 팀은 이름 해시로 샤드가 정해지고, 팀에 속한 회원은 팀과 같은 샤드에 저장된다.
+ * 2차 캐시와 커밋 이벤트(MemberChangeListener)는 기본 DataSource 에만 적용된다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.shard", name = "urls")
+public class MemberShards implements DisposableBean {
+
+    static final int SHARD_SHIFT = 40;
+    private static final long ID_ALLOCATION_SIZE = 50; //@SequenceGenerator allocationSize 와 같아야 한다
+    private static final List<String> SEQUENCES = List.of("member_seq", "team_seq");
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+
+    public MemberShards(EntityManagerFactoryBuilder builder,
+                        @Value("${querydsl.shard.urls}") String[] urls,
+                        @Value("${querydsl.shard.username:sa}") String username,
+                        @Value("${querydsl.shard.password:}") String password,
+                        @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) throws SQLException {
+        for (int i = 0; i < urls.length; i++) {
+            DataSource dataSource = DataSourceBuilder.create()
+                    .url(urls[i].trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            LocalContainerEntityManagerFactoryBean factoryBean = builder
+                    .dataSource(dataSource)
+                    .packages(Member.class)
+                    .persistenceUnit("shard" + i)
+                    .properties(shardJpaProperties(ddlAuto))
+                    .build();
+            factoryBean.afterPropertiesSet();
+            shards.add(new Shard(i, dataSource, factoryBean.getObject()));
+            moveSequencesToShardRange(i, dataSource);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(urls.length, r -> {
+            Thread thread = new Thread(r, "member-shard-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("member shards ready: {}", urls.length);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public List<Shard> all() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * 이 샤드에서 만든 식별자인지 상위 비트로 판단한다.
+     */
+    public Shard forId(Long id) {
+        int index = (int) (id >>> SHARD_SHIFT);
+        if (index >= shards.size()) {
+            throw new IllegalArgumentException("id " + id + " does not belong to any shard");
+        }
+        return shards.get(index);
+    }
+
+    public Shard forTeamName(String teamName) {
+        return forKey(teamName);
+    }
+
+    /**
+     * 팀이 없는 회원처럼 팀 이름 대신 다른 값으로 나눌 때
+     */
+    public Shard forKey(String key) {
+        return shards.get(Math.floorMod(Objects.hashCode(key), shards.size()));
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        for (Shard shard : shards) {
+            shard.emf.close();
+            if (shard.dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) shard.dataSource).close();
+                } catch (IOException e) {
+                    log.warn("failed to close shard {} datasource", shard.index, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * EntityManagerFactoryBuilder 는 spring.jpa.properties 만 가지고 있으므로 부트가 기본 DataSource 에 해주던 설정을 채운다.
+     */
+    private static Map<String, Object> shardJpaProperties(String ddlAuto) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", ddlAuto);
+        properties.put("hibernate.physical_naming_strategy",
+                "org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy");
+        properties.put("hibernate.implicit_naming_strategy",
+                "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy");
+        //2차 캐시 region 이름이 샤드끼리 겹치므로 샤드에서는 쓰지 않는다
+        properties.put("hibernate.cache.use_second_level_cache", false);
+        properties.put("hibernate.cache.use_query_cache", false);
+        return properties;
+    }
+
+    /**
+     * 샤드 i 의 시퀀스를 i << 40 이후로 옮긴다. 이미 옮겨져 있으면 그대로 둔다.
+     */
+    private static void moveSequencesToShardRange(int index, DataSource dataSource) throws SQLException {
+        if (index == 0) {
+            return;
+        }
+        long base = (long) index << SHARD_SHIFT;
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sequence : SEQUENCES) {
+                long next;
+                try (ResultSet rs = statement.executeQuery("select next value for " + sequence)) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+                if (next < base) {
+                    //pooled 옵티마이저는 처음 읽은 값 v 에 대해 v-49 ~ v 를 쓰므로 base+1 부터 나가도록 한다
+                    statement.execute("alter sequence " + sequence + " restart with " + (base + ID_ALLOCATION_SIZE));
+                }
+            }
+        }
+    }
+
+    public static final class Shard {
+
+        private final int index;
+        private final DataSource dataSource;
+        private final EntityManagerFactory emf;
+        private final TransactionTemplate writeTx;
+        private final TransactionTemplate readTx;
+        private final JPAQueryFactory queryFactory;
+        private final EntityManager em;
+
+        private Shard(int index, DataSource dataSource, EntityManagerFactory emf) {
+            this.index = index;
+            this.dataSource = dataSource;
+            this.emf = emf;
+            JpaTransactionManager transactionManager = new JpaTransactionManager(emf);
+            this.writeTx = new TransactionTemplate(transactionManager);
+            this.readTx = new TransactionTemplate(transactionManager);
+            this.readTx.setReadOnly(true);
+            //이 샤드 트랜잭션에 묶인 EntityManager 를 찾아주는 프록시
+            this.em = SharedEntityManagerCreator.createSharedEntityManager(emf);
+            this.queryFactory = new JPAQueryFactory(em);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public <T> T write(Function<EntityManager, T> work) {
+            return writeTx.execute(status -> work.apply(em));
+        }
+
+        public <T> T read(Function<JPAQueryFactory, T> query) {
+            return readTx.execute(status -> query.apply(queryFactory));
+        }
+
+        public <T> T find(Class<T> type, Object id) {
+            return readTx.execute(status -> em.find(type, id));
+        }
+    }
+}
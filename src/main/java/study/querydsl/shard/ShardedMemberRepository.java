@@ -0,0 +1,214 @@
+package study.querydsl.shard;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberSortResolver;
+import study.querydsl.repository.SearchConditionNormalizer;
+import study.querydsl.shard.MemberShards.Shard;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberPredicates.ageBetween;
+import static study.querydsl.repository.MemberPredicates.teamNameEq;
+import static study.querydsl.repository.MemberPredicates.usernameEq;
+
+/**
+ * 샤드에 나눠 담긴 회원 저장소.
+ * <p>
+ * teamName 조건이 있으면 그 팀이 있는 샤드 하나만 조회하고, 없으면 모든 샤드를 병렬로 조회해서(scatter-gather)
+ * 같은 정렬 기준으로 합친다. 페이징은 샤드마다 offset + size 건을 가져와 합친 뒤 offset 만큼 건너뛴다.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "querydsl.shard", name = "urls")
+public class ShardedMemberRepository {
+
+    private final MemberShards shards;
+    private final MemberSortResolver sortResolver;
+
+    public void save(Team team) {
+        shards.forTeamName(team.getName()).write(em -> {
+            em.persist(team);
+            return team;
+        });
+    }
+
+    /**
+     * 팀이 있으면 팀과 같은 샤드에 저장한다. 팀은 먼저 저장되어 있어야 한다.
+     */
+    public void save(Member member) {
+        Shard shard = member.getTeam() == null
+                ? shards.forKey(member.getUsername())
+                : shards.forId(member.getTeam().getId());
+        shard.write(em -> {
+            em.persist(member);
+            return member;
+        });
+    }
+
+    public Optional<Member> findById(Long id) {
+        return Optional.ofNullable(shards.forId(id).find(Member.class, id));
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return List.of();
+        }
+        OrderSpecifier<?>[] orders = sortResolver.resolve(Sort.unsorted());
+        if (hasText(normalized.getTeamName())) {
+            return shards.forTeamName(normalized.getTeamName())
+                    .read(queryFactory -> contentQuery(queryFactory, normalized).orderBy(orders).fetch());
+        }
+
+        List<List<MemberTeamDto>> results = scatter(shard -> shard.read(queryFactory ->
+                contentQuery(queryFactory, normalized).orderBy(orders).fetch()));
+        return merge(results, sortResolver.comparator(Sort.unsorted()), 0, Integer.MAX_VALUE);
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition normalized = SearchConditionNormalizer.normalize(condition).orElse(null);
+        if (normalized == null) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        OrderSpecifier<?>[] orders = sortResolver.resolve(pageable.getSort());
+        if (hasText(normalized.getTeamName())) {
+            return shards.forTeamName(normalized.getTeamName()).read(queryFactory -> {
+                List<MemberTeamDto> content = contentQuery(queryFactory, normalized)
+                        .orderBy(orders)
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch();
+                return new PageImpl<>(content, pageable, countQuery(queryFactory, normalized).fetchCount());
+            });
+        }
+
+        //전체 순서에서 offset + size 안에 드는 행은 각 샤드의 앞쪽 offset + size 건 안에 반드시 있다
+        long perShardLimit = pageable.getOffset() + pageable.getPageSize();
+        List<ShardPage> pages = scatter(shard -> shard.read(queryFactory -> new ShardPage(
+                contentQuery(queryFactory, normalized).orderBy(orders).limit(perShardLimit).fetch(),
+                countQuery(queryFactory, normalized).fetchCount())));
+
+        List<MemberTeamDto> content = merge(
+                pages.stream().map(page -> page.content).collect(Collectors.toList()),
+                sortResolver.comparator(pageable.getSort()),
+                pageable.getOffset(),
+                pageable.getPageSize());
+        long total = pages.stream().mapToLong(page -> page.total).sum();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private <T> List<T> scatter(Function<Shard, T> work) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (Shard shard : shards.all()) {
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), shards.executor()));
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * 각각 정렬된 목록을 k-way merge 해서 skip 건 건너뛴 뒤 limit 건을 돌려준다.
+     */
+    static <T> List<T> merge(List<List<T>> sortedLists, Comparator<T> comparator, long skip, int limit) {
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>((a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<T> list : sortedLists) {
+            if (!list.isEmpty()) {
+                heap.add(new Cursor<>(list));
+            }
+        }
+
+        List<T> result = new ArrayList<>();
+        long skipped = 0;
+        while (!heap.isEmpty() && result.size() < limit) {
+            Cursor<T> cursor = heap.poll();
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                result.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private JPAQuery<MemberTeamDto> contentQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                );
+    }
+
+    private JPAQuery<Member> countQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return queryFactory
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageBetween(condition.getAgeGoe(), condition.getAgeLoe())
+                );
+    }
+
+
+    private static final class ShardPage {
+
+        private final List<MemberTeamDto> content;
+        private final long total;
+
+        ShardPage(List<MemberTeamDto> content, long total) {
+            this.content = content;
+            this.total = total;
+        }
+    }
+
+    private static final class Cursor<T> {
+
+        private final List<T> list;
+        private int position;
+
+        Cursor(List<T> list) {
+            this.list = list;
+        }
+
+        T current() {
+            return list.get(position);
+        }
+
+        boolean advance() {
+            return ++position < list.size();
+        }
+    }
+}
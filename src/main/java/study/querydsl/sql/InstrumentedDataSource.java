@@ -0,0 +1,225 @@
+package study.querydsl.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * SQL 샘플링 로그({@link SqlLogSampler})와 느린 SQL 기록({@link SlowQueryRecorder})을 한 번에 하는 DataSource.
+ * 둘 중 꺼진 쪽은 null 이다.
+ * <p>
+ * 커넥션과 문장을 위임 클래스로 한 겹만 감싸고, 실행 시간은 한 번 재서 두 곳에 같이 넘긴다.
+ * 문장마다 감싸는 객체 하나를 만들고, 느린 SQL 을 기록하면 어떤 문장이 느릴지 미리 모르므로
+ * 바인딩 값이 있는 문장은 값 참조를 담을 배열도 하나 만든다. (첫 set* 때)
+ * 빠른 문장은 그 배열을 복사하지 않고 버린다. 기본 설정에서의 이 비용은 SqlLoggingOverheadBenchmark 의 default 줄이다.
+ * 느린 select 만 ResultSet 을 리플렉션 프록시로 감싸 닫힐 때 읽은 행 수를 채운다.
+ * 배치는 addBatch 마다 값을 덮어쓰므로 바인딩 값 없이 행 수만 넘긴다.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final SqlLogSampler sampler;
+    private final SlowQueryRecorder recorder;
+
+    public InstrumentedDataSource(DataSource target, SqlLogSampler sampler, SlowQueryRecorder recorder) {
+        super(target);
+        this.sampler = sampler;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new InstrumentedConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return new InstrumentedConnection(super.getConnection(username, password));
+    }
+
+    private boolean sample() {
+        return sampler != null && sampler.sample();
+    }
+
+    /**
+     * 실행 하나를 두 곳에 넘긴다. 느린 select 면 행 수를 세는 ResultSet 을 돌려준다.
+     * connection 은 감싸기 전 커넥션이다. (EXPLAIN 용)
+     */
+    private ResultSet executed(Connection connection, boolean sampled, String sql, Object[] binds, int bindCount,
+                               int batchSize, long elapsedNanos, long rows, ResultSet resultSet) {
+        if (sampler != null) {
+            sampler.executed(sampled, sql, binds, bindCount, elapsedNanos);
+        }
+        if (recorder == null || elapsedNanos < recorder.getThresholdNanos()) {
+            return resultSet;
+        }
+        Object[] values = binds == null ? null : Arrays.copyOf(binds, bindCount);
+        SlowQueryEntry entry = recorder.record(sql, values, batchSize, elapsedNanos, rows, connection);
+        if (resultSet == null) {
+            return null;
+        }
+        return (ResultSet) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new RowCountingHandler(resultSet, entry));
+    }
+
+    private void failed(boolean sampled, String sql, Object[] binds, int bindCount, long elapsedNanos) {
+        if (sampler != null) {
+            sampler.executed(sampled, sql, binds, bindCount, elapsedNanos);
+        }
+    }
+
+    private class InstrumentedConnection extends InterceptingConnection {
+
+        InstrumentedConnection(Connection target) {
+            super(target);
+        }
+
+        @Override
+        protected Statement intercept(Statement statement) {
+            return new InstrumentedStatement(statement, this, sample());
+        }
+
+        @Override
+        protected PreparedStatement intercept(PreparedStatement statement, String sql) {
+            return new InstrumentedPreparedStatement(statement, this, sql, sample());
+        }
+    }
+
+    private class InstrumentedStatement extends InterceptingStatement {
+
+        private final Connection rawConnection;
+        private final boolean sampled;
+
+        InstrumentedStatement(Statement target, InstrumentedConnection connection, boolean sampled) {
+            super(target, connection);
+            this.rawConnection = connection.target;
+            this.sampled = sampled;
+        }
+
+        @Override
+        protected void executed(String sql, long elapsedNanos, long rows) {
+            InstrumentedDataSource.this.executed(rawConnection, sampled, sql, null, 0, 0, elapsedNanos, rows, null);
+        }
+
+        @Override
+        protected ResultSet executedQuery(String sql, long elapsedNanos, ResultSet resultSet) {
+            return InstrumentedDataSource.this.executed(rawConnection, sampled, sql, null, 0, 0,
+                    elapsedNanos, -1, resultSet);
+        }
+
+        @Override
+        protected void failed(String sql, long elapsedNanos) {
+            InstrumentedDataSource.this.failed(sampled, sql, null, 0, elapsedNanos);
+        }
+    }
+
+    private class InstrumentedPreparedStatement extends InterceptingPreparedStatement {
+
+        private final Connection rawConnection;
+        private final boolean sampled;
+        private final boolean captureBinds;
+        private Object[] binds;
+        private int bindCount;
+        private int batchSize;
+
+        InstrumentedPreparedStatement(PreparedStatement target, InstrumentedConnection connection, String sql, boolean sampled) {
+            super(target, connection, sql);
+            this.rawConnection = connection.target;
+            this.sampled = sampled;
+            this.captureBinds = sampled || recorder != null;
+        }
+
+        @Override
+        protected void bound(int parameterIndex, Object value) {
+            if (!captureBinds || parameterIndex < 1) {
+                return;
+            }
+            if (binds == null) {
+                binds = new Object[Math.max(8, parameterIndex)];
+            } else if (parameterIndex > binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(parameterIndex, binds.length * 2));
+            }
+            binds[parameterIndex - 1] = value;
+            bindCount = Math.max(bindCount, parameterIndex);
+        }
+
+        @Override
+        protected void cleared() {
+            if (binds != null) {
+                Arrays.fill(binds, null);
+            }
+            bindCount = 0;
+        }
+
+        @Override
+        protected void batched() {
+            batchSize++;
+        }
+
+        @Override
+        public void clearBatch() throws SQLException {
+            super.clearBatch();
+            batchSize = 0;
+        }
+
+        @Override
+        protected void executed(String sql, long elapsedNanos, long rows) {
+            int batch = batchSize;
+            batchSize = 0; //executeBatch 뒤 드라이버도 배치를 비운다
+            if (batch > 0) {
+                InstrumentedDataSource.this.executed(rawConnection, sampled, sql, null, 0, batch, elapsedNanos, rows, null);
+            } else {
+                InstrumentedDataSource.this.executed(rawConnection, sampled, sql, binds, bindCount, 0, elapsedNanos, rows, null);
+            }
+        }
+
+        @Override
+        protected ResultSet executedQuery(String sql, long elapsedNanos, ResultSet resultSet) {
+            return InstrumentedDataSource.this.executed(rawConnection, sampled, sql, binds, bindCount, 0,
+                    elapsedNanos, -1, resultSet);
+        }
+
+        @Override
+        protected void failed(String sql, long elapsedNanos) {
+            if (batchSize > 0) {
+                batchSize = 0;
+                InstrumentedDataSource.this.failed(sampled, sql, null, 0, elapsedNanos);
+            } else {
+                InstrumentedDataSource.this.failed(sampled, sql, binds, bindCount, elapsedNanos);
+            }
+        }
+    }
+
+    private static class RowCountingHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final SlowQueryEntry entry;
+        private long rows;
+
+        RowCountingHandler(ResultSet target, SlowQueryEntry entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                rows++;
+            } else if ("close".equals(method.getName())) {
+                entry.setRows(rows);
+            }
+            return result;
+        }
+    }
+}
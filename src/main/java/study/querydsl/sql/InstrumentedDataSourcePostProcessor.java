@@ -0,0 +1,63 @@
+package study.querydsl.sql;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSource 빈을 {@link InstrumentedDataSource} 로 한 번만 감싼다.
+ * querydsl.sql-log.enabled(기본 false), querydsl.slow-query.enabled(기본 true) 가 모두 꺼져 있으면 감싸지 않는다.
+ * <p>
+ * 다른 DataSource 후처리(p6spy 같은 데코레이터)보다 먼저 실행되어 가장 안쪽에서 감싼다.
+ * 그래서 실행 시간에 다른 데코레이터 비용이 섞이지 않고, EXPLAIN 은 감싸기 전 커넥션으로 실행해서
+ * 샘플링되거나 느린 SQL 로 다시 기록되지 않는다.
+ */
+@Component
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+    private final ObjectProvider<SlowQueryRecorder> recorder;
+    private final SqlLogWriter writer;
+    private final SqlLogSampler sampler;
+
+    public InstrumentedDataSourcePostProcessor(ObjectProvider<SlowQueryRecorder> recorder,
+                                               @Value("${querydsl.sql-log.enabled:false}") boolean sqlLogEnabled,
+                                               @Value("${querydsl.sql-log.sample-rate:0.01}") double sampleRate,
+                                               @Value("${querydsl.sql-log.slow-threshold-ms:200}") long slowThresholdMs,
+                                               @Value("${querydsl.sql-log.buffer-size:4096}") int bufferSize) {
+        this.recorder = recorder;
+        this.writer = sqlLogEnabled ? new SqlLogWriter(bufferSize) : null;
+        this.sampler = sqlLogEnabled
+                ? new SqlLogSampler(sampleRate, TimeUnit.MILLISECONDS.toNanos(slowThresholdMs), writer)
+                : null;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof InstrumentedDataSource) {
+            return bean;
+        }
+        SlowQueryRecorder slowQueryRecorder = recorder.getIfAvailable();
+        if (sampler == null && slowQueryRecorder == null) {
+            return bean;
+        }
+        return new InstrumentedDataSource((DataSource) bean, sampler, slowQueryRecorder);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
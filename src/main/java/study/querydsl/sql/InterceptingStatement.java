@@ -0,0 +1,476 @@
+package study.querydsl.sql;
+
+import java.sql.*;
+
+/**
+ * 모든 호출을 그대로 넘기고 execute* 만 시간을 재서 훅으로 알리는 Statement.
+ * <p>
+ * 실행마다 nanoTime 두 번과 훅 호출 하나다. 훅은 실행한 스레드에서 불리므로 가볍게 끝내야 한다.
+ */
+public class InterceptingStatement implements Statement {
+
+    private final Statement target;
+    private final Connection connection;
+
+    public InterceptingStatement(Statement target, Connection connection) {
+        this.target = target;
+        this.connection = connection;
+    }
+
+    /**
+     * 실행 하나가 끝났다. rows 는 바뀐 행 수, 모르면(execute, select) -1
+     */
+    protected void executed(String sql, long elapsedNanos, long rows) {
+    }
+
+    /**
+     * executeQuery 가 끝났다. 돌려준 ResultSet 이 호출한 쪽으로 간다.
+     */
+    protected ResultSet executedQuery(String sql, long elapsedNanos, ResultSet resultSet) {
+        executed(sql, elapsedNanos, -1);
+        return resultSet;
+    }
+
+    /**
+     * 실행이 예외로 끝났다. 예외는 그대로 던진다.
+     */
+    protected void failed(String sql, long elapsedNanos) {
+    }
+
+    static long rows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+
+    static long rows(long[] counts) {
+        long rows = 0;
+        for (long count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        long start = System.nanoTime();
+        ResultSet resultSet;
+        try {
+            resultSet = target.executeQuery(sql);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        return executedQuery(sql, System.nanoTime() - start, resultSet);
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = target.executeUpdate(sql);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = target.executeUpdate(sql, autoGeneratedKeys);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = target.executeUpdate(sql, columnIndexes);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        int rows;
+        try {
+            rows = target.executeUpdate(sql, columnNames);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        long rows;
+        try {
+            rows = target.executeLargeUpdate(sql);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        long rows;
+        try {
+            rows = target.executeLargeUpdate(sql, autoGeneratedKeys);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        long rows;
+        try {
+            rows = target.executeLargeUpdate(sql, columnIndexes);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        long rows;
+        try {
+            rows = target.executeLargeUpdate(sql, columnNames);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, rows);
+        return rows;
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        long start = System.nanoTime();
+        boolean result;
+        try {
+            result = target.execute(sql);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, -1);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        boolean result;
+        try {
+            result = target.execute(sql, autoGeneratedKeys);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, -1);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        boolean result;
+        try {
+            result = target.execute(sql, columnIndexes);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, -1);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        boolean result;
+        try {
+            result = target.execute(sql, columnNames);
+        } catch (SQLException | RuntimeException e) {
+            failed(sql, System.nanoTime() - start);
+            throw e;
+        }
+        executed(sql, System.nanoTime() - start, -1);
+        return result;
+    }
+
+    /**
+     * addBatch(String) 로 넣은 문장들은 하나로 알린다. (sql 은 PreparedStatement 면 그 sql, 아니면 null)
+     */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        long start = System.nanoTime();
+        int[] counts;
+        try {
+            counts = target.executeBatch();
+        } catch (SQLException | RuntimeException e) {
+            failed(batchSql(), System.nanoTime() - start);
+            throw e;
+        }
+        executed(batchSql(), System.nanoTime() - start, rows(counts));
+        return counts;
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        long start = System.nanoTime();
+        long[] counts;
+        try {
+            counts = target.executeLargeBatch();
+        } catch (SQLException | RuntimeException e) {
+            failed(batchSql(), System.nanoTime() - start);
+            throw e;
+        }
+        executed(batchSql(), System.nanoTime() - start, rows(counts));
+        return counts;
+    }
+
+    String batchSql() {
+        return null;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        target.close();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return target.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        target.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return target.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        target.setMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return target.getLargeMaxRows();
+    }
+
+    @Override
+    public void setLargeMaxRows(long max) throws SQLException {
+        target.setLargeMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        target.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return target.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        target.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        target.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return target.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        target.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        target.setCursorName(name);
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return target.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return target.getUpdateCount();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return target.getLargeUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return target.getMoreResults();
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return target.getMoreResults(current);
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        target.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return target.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        target.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return target.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return target.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return target.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        target.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        target.clearBatch();
+    }
+
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return target.getGeneratedKeys();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return target.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return target.isClosed();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        target.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return target.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        target.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return target.isCloseOnCompletion();
+    }
+
+    @Override
+    public String enquoteLiteral(String val) throws SQLException {
+        return target.enquoteLiteral(val);
+    }
+
+    @Override
+    public String enquoteIdentifier(String identifier, boolean alwaysQuote) throws SQLException {
+        return target.enquoteIdentifier(identifier, alwaysQuote);
+    }
+
+    @Override
+    public boolean isSimpleIdentifier(String identifier) throws SQLException {
+        return target.isSimpleIdentifier(identifier);
+    }
+
+    @Override
+    public String enquoteNCharLiteral(String val) throws SQLException {
+        return target.enquoteNCharLiteral(val);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.sql;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 지금 스레드에서 SQL 을 실행하게 만든 리포지토리 메서드를 ThreadLocal 에 둔다. (SlowQueryEntry.origin)
+ * 리포지토리가 다른 리포지토리를 부르면 가장 안쪽 메서드가 남는다.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "querydsl.slow-query", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryOrigin {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    static String current() {
+        return CURRENT.get();
+    }
+
+    @Around("execution(public * study.querydsl.repository..*(..)) || execution(public * study.querydsl.shard.ShardedMemberRepository.*(..))")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        String previous = CURRENT.get();
+        CURRENT.set(joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.sql;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * /actuator/slowqueries : 최근 느린 SQL (최근 것부터). DELETE 로 비운다.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "querydsl.slow-query", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryEndpoint {
+
+    private final SlowQueryRecorder recorder;
+
+    @ReadOperation
+    public Map<String, Object> slowQueries() {
+        List<Map<String, Object>> entries = recorder.entries().stream()
+                .map(SlowQueryEndpoint::toMap)
+                .collect(Collectors.toList());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("thresholdMs", recorder.getThresholdNanos() / 1_000_000);
+        result.put("recorded", recorder.getRecordedCount());
+        result.put("entries", entries);
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        recorder.clear();
+    }
+
+    private static Map<String, Object> toMap(SlowQueryEntry entry) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("executedAt", entry.getExecutedAt().toString());
+        map.put("elapsedMs", entry.getElapsedNanos() / 1e6);
+        map.put("origin", entry.getOrigin());
+        map.put("thread", entry.getThread());
+        map.put("sql", entry.getSql());
+        map.put("binds", entry.getBinds() == null ? null
+                : Arrays.stream(entry.getBinds()).map(String::valueOf).collect(Collectors.toList()));
+        map.put("batchSize", entry.getBatchSize() == 0 ? null : entry.getBatchSize());
+        map.put("rows", entry.getRows() < 0 ? null : entry.getRows());
+        map.put("plan", entry.getPlan());
+        return map;
+    }
+}
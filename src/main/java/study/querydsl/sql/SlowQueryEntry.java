@@ -0,0 +1,41 @@
+package study.querydsl.sql;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * 느린 SQL 실행 한 건. 행 수는 select 면 ResultSet 을 닫을 때 채워진다. (-1 이면 아직 모른다)
+ * 실행 계획은 select 만 기록할 때 붙는다.
+ * <p>
+ * 배치는 행마다 바인딩 값이 달라 binds 없이 batchSize(행 수)만 남긴다. 배치가 아니면 batchSize 는 0 이다.
+ */
+@Getter
+public class SlowQueryEntry {
+
+    private final Instant executedAt;
+    private final String sql;
+    private final Object[] binds;
+    private final int batchSize;
+    private final long elapsedNanos;
+    private final String origin;
+    private final String thread;
+    private final String plan;
+    private volatile long rows;
+
+    SlowQueryEntry(String sql, Object[] binds, int batchSize, long elapsedNanos, long rows, String plan, String origin) {
+        this.executedAt = Instant.now();
+        this.sql = sql;
+        this.binds = binds;
+        this.batchSize = batchSize;
+        this.elapsedNanos = elapsedNanos;
+        this.rows = rows;
+        this.plan = plan;
+        this.origin = origin;
+        this.thread = Thread.currentThread().getName();
+    }
+
+    void setRows(long rows) {
+        this.rows = rows;
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 최근 느린 SQL N 건을 고정 크기 링 버퍼에 둔다. 오래된 것부터 덮어쓴다.
+ * <p>
+ * 기록은 자리 잡기(getAndIncrement)와 참조 쓰기뿐이다.
+ * select 문은 기록하기 전에 실행한 커넥션에서 같은 바인딩 값으로 EXPLAIN 을 실행해 계획을 붙인다.
+ * 이미 threshold 를 넘긴 문장에만 하므로 느린 SQL 마다 EXPLAIN 한 번이 실행 스레드에 더해지고,
+ * 같은 트랜잭션에서 보는 데이터로 계획을 뽑으며 따로 커넥션을 빌리지 않는다.
+ * /actuator/slowqueries 로 본다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.slow-query", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryRecorder {
+
+    private final AtomicReferenceArray<SlowQueryEntry> slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder recorded = new LongAdder();
+    private final long thresholdNanos;
+    private final boolean explain;
+
+    public SlowQueryRecorder(@Value("${querydsl.slow-query.capacity:100}") int capacity,
+                             @Value("${querydsl.slow-query.threshold-ms:200}") long thresholdMs,
+                             @Value("${querydsl.slow-query.explain:true}") boolean explain) {
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.explain = explain;
+    }
+
+    long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * connection 은 문장을 실행한 감싸기 전 커넥션이다. EXPLAIN 이 다시 기록되지 않는다.
+     */
+    SlowQueryEntry record(String sql, Object[] binds, int batchSize, long elapsedNanos, long rows, Connection connection) {
+        String plan = explain && isSelect(sql) ? explain(connection, sql, binds) : null;
+        SlowQueryEntry entry = new SlowQueryEntry(sql, binds, batchSize, elapsedNanos, rows, plan, QueryOrigin.current());
+        slots.set((int) (sequence.getAndIncrement() % slots.length()), entry);
+        recorded.increment();
+        return entry;
+    }
+
+    /**
+     * 최근 것부터
+     */
+    public List<SlowQueryEntry> entries() {
+        long end = sequence.get();
+        int capacity = slots.length();
+        List<SlowQueryEntry> result = new ArrayList<>(capacity);
+        for (long i = end - 1; i >= 0 && i >= end - capacity; i--) {
+            SlowQueryEntry entry = slots.get((int) (i % capacity));
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    private static String explain(Connection connection, String sql, Object[] binds) {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; binds != null && i < binds.length; i++) {
+                statement.setObject(i + 1, binds[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException | RuntimeException e) {
+            log.debug("explain failed: {}", sql, e);
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private static boolean isSelect(String sql) {
+        return sql != null && sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * querydsl.sql-log.enabled=true 면 하이버네이트가 직접 남기는 SQL 로그(org.hibernate.SQL, show_sql, format_sql, 주석)를 끈다.
+ * 샘플링 로그가 그 자리를 대신하므로 모든 문장을 동기로 남기는 로그와 같이 돌지 않게 한다. (프로필 설정보다 우선한다)
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "querydsl.sql-log", name = "enabled", havingValue = "true")
+public class SqlLogConfig {
+
+    static final String HIBERNATE_SQL_LOGGER = "org.hibernate.SQL";
+
+    public SqlLogConfig(LoggingSystem loggingSystem) {
+        loggingSystem.setLogLevel(HIBERNATE_SQL_LOGGER, LogLevel.INFO);
+        log.info("querydsl.sql-log is enabled, {} debug logging is turned off", HIBERNATE_SQL_LOGGER);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer synchronousSqlLogOff() {
+        return properties -> {
+            properties.put(AvailableSettings.SHOW_SQL, "false");
+            properties.put(AvailableSettings.FORMAT_SQL, "false");
+            properties.put(AvailableSettings.USE_SQL_COMMENTS, "false");
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.sql;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 로그로 남길 실행 한 건. 바인딩 값은 샘플링된 문장만 가지고 있다.
+ */
+@Getter
+@AllArgsConstructor
+public class SqlLogEntry {
+
+    public enum Reason {
+        SAMPLED, SLOW
+    }
+
+    private final Reason reason;
+    private final String sql;
+    private final Object[] binds;
+    private final long elapsedNanos;
+}
@@ -0,0 +1,67 @@
+package study.querydsl.sql;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 여러 스레드가 넣고 한 스레드가 꺼내는 고정 크기 링 버퍼. (락 없음, 가득 차면 버린다)
+ * <p>
+ * 칸마다 시퀀스를 두어 생산자는 CAS 로 자리를 잡고, 값을 쓴 뒤 시퀀스를 올려 소비자에게 넘긴다.
+ */
+class SqlLogRingBuffer {
+
+    private final SqlLogEntry[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private long head; //소비자 스레드만 쓴다
+
+    SqlLogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new SqlLogEntry[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(SqlLogEntry entry) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = entry;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    SqlLogEntry poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        SqlLogEntry entry = slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return entry;
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+}
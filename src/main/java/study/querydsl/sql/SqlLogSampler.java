@@ -0,0 +1,40 @@
+package study.querydsl.sql;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 일부 SQL 만 로그로 남긴다. (querydsl.sql-log)
+ * <p>
+ * 문장을 준비할 때 sample-rate 확률로 샘플링을 정하고, 샘플링된 문장만 바인딩 값과 함께 남긴다.
+ * 샘플링되지 않은 문장은 slow-threshold 를 넘을 때 SQL 만 남긴다. 포맷팅과 출력은 {@link SqlLogWriter} 스레드가 한다.
+ */
+public class SqlLogSampler {
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final SqlLogWriter writer;
+
+    public SqlLogSampler(double sampleRate, long slowThresholdNanos, SqlLogWriter writer) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.writer = writer;
+    }
+
+    boolean sample() {
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * binds 는 문장이 모은 배열 그대로다. (앞에서 bindCount 개가 값) 남길 때만 복사한다.
+     */
+    void executed(boolean sampled, String sql, Object[] binds, int bindCount, long elapsedNanos) {
+        if (sampled || elapsedNanos >= slowThresholdNanos) {
+            writer.offer(new SqlLogEntry(
+                    sampled ? SqlLogEntry.Reason.SAMPLED : SqlLogEntry.Reason.SLOW,
+                    sql,
+                    sampled ? (binds == null ? new Object[0] : Arrays.copyOf(binds, bindCount)) : null,
+                    elapsedNanos));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.sql;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 링 버퍼를 비우며 로그를 쓰는 전용 스레드. SQL 을 실행한 스레드는 버퍼에 넣기만 한다.
+ */
+@Slf4j
+public class SqlLogWriter implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final SqlLogRingBuffer buffer;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long reportedDrops;
+
+    public SqlLogWriter(int bufferSize) {
+        this.buffer = new SqlLogRingBuffer(bufferSize);
+        this.thread = new Thread(this::drainLoop, "sql-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public boolean offer(SqlLogEntry entry) {
+        return buffer.offer(entry);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    private boolean drain() {
+        boolean any = false;
+        SqlLogEntry entry;
+        while ((entry = buffer.poll()) != null) {
+            any = true;
+            write(entry);
+        }
+        long drops = buffer.droppedCount();
+        if (drops != reportedDrops) {
+            log.warn("sql log buffer full, {} entries dropped so far", drops);
+            reportedDrops = drops;
+        }
+        return any;
+    }
+
+    private void write(SqlLogEntry entry) {
+        double millis = entry.getElapsedNanos() / 1_000_000.0;
+        if (entry.getBinds() == null) {
+            log.info("[{}] {}ms {}", entry.getReason(), String.format("%.3f", millis), entry.getSql());
+        } else {
+            log.info("[{}] {}ms {} binds={}", entry.getReason(), String.format("%.3f", millis), entry.getSql(),
+                    Arrays.toString(entry.getBinds()));
+        }
+    }
+}
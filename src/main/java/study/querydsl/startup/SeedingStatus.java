@@ -0,0 +1,40 @@
+package study.querydsl.startup;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 초기 데이터 적재 상태. 백그라운드로 적재하는 동안은 {@link WarmingInterceptor} 가 API 요청을 503 으로 돌려보낸다.
+ * 적재하지 않는 환경에서는 처음부터 READY 이다.
+ */
+@Component
+public class SeedingStatus {
+
+    public enum State {
+        WARMING, READY, FAILED
+    }
+
+    private volatile State state = State.READY;
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isWarming() {
+        return state == State.WARMING;
+    }
+
+    public void warming() {
+        state = State.WARMING;
+    }
+
+    public void ready() {
+        state = State.READY;
+    }
+
+    /**
+     * 실패하면 더 기다려도 소용없으므로 요청은 통과시키고(있는 데이터로 응답) 상태만 남긴다.
+     */
+    public void failed() {
+        state = State.FAILED;
+    }
+}
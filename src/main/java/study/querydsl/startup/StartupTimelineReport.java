@@ -0,0 +1,116 @@
+package study.querydsl.startup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 기동이 끝나면(ApplicationReadyEvent) 단계별 소요 시간을 로그로 남긴다.
+ * <p>
+ * QuerydslApplication.main 이 BufferingApplicationStartup 을 걸어야 기록이 있다. 테스트처럼 기록이 없으면 아무것도 하지 않는다.
+ * 원본 타임라인은 /actuator/startup 으로 볼 수 있다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StartupTimelineReport {
+
+    static final String CONTEXT_REFRESH = "spring.context.refresh";
+    static final String BEAN_INSTANTIATE = "spring.beans.instantiate";
+    static final String BEAN_NAME = "beanName";
+
+    /**
+     * 직접 기록하는 단계. (InitMember, QueryWarmup)
+     */
+    public static final String SEEDING = "querydsl.init-member";
+    public static final String WARMUP = "querydsl.warmup";
+
+    private static final int SLOWEST_BEANS = 10;
+
+    private final ConfigurableApplicationContext context;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ApplicationStartup startup = context.getApplicationStartup();
+        if (!(startup instanceof BufferingApplicationStartup)) {
+            return;
+        }
+        List<TimelineEvent> events = ((BufferingApplicationStartup) startup).getBufferedTimeline().getEvents();
+
+        StringBuilder report = new StringBuilder("startup timeline:");
+        phases(events).forEach((phase, duration) ->
+                report.append(String.format("%n  %-28s %6dms", phase, duration.toMillis())));
+        report.append(String.format("%n  slowest beans (including dependencies):"));
+        slowestBeans(events, SLOWEST_BEANS).forEach((bean, duration) ->
+                report.append(String.format("%n    %-26s %6dms", bean, duration.toMillis())));
+        log.info(report.toString());
+    }
+
+    /**
+     * 단계 이름 -> 소요 시간. 기록에 없는 단계는 빠진다.
+     * 빈 초기화는 다른 빈 초기화 안에서 일어난 것을 빼고 더한다. (중복으로 세지 않는다)
+     * 스키마 생성(ddl-auto)은 entityManagerFactory 빈 초기화 안에서 일어난다.
+     */
+    static Map<String, Duration> phases(List<TimelineEvent> events) {
+        Set<Long> beanStepIds = events.stream()
+                .filter(event -> BEAN_INSTANTIATE.equals(event.getStartupStep().getName()))
+                .map(event -> event.getStartupStep().getId())
+                .collect(Collectors.toSet());
+
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        Duration beans = Duration.ZERO;
+        for (TimelineEvent event : events) {
+            StartupStep step = event.getStartupStep();
+            if (CONTEXT_REFRESH.equals(step.getName())) {
+                phases.put("context refresh", event.getDuration());
+            } else if (BEAN_INSTANTIATE.equals(step.getName())) {
+                if (step.getParentId() == null || !beanStepIds.contains(step.getParentId())) {
+                    beans = beans.plus(event.getDuration());
+                }
+                String beanName = tag(step, BEAN_NAME);
+                if ("entityManagerFactory".equals(beanName)) {
+                    phases.put("jpa + schema (ddl-auto)", event.getDuration());
+                } else if ("jpaQueryFactory".equals(beanName)) {
+                    phases.put("querydsl factory", event.getDuration());
+                }
+            } else if (SEEDING.equals(step.getName())) {
+                phases.put("seeding", event.getDuration());
+            } else if (WARMUP.equals(step.getName())) {
+                phases.put("query warm-up", event.getDuration());
+            }
+        }
+        if (!beanStepIds.isEmpty()) {
+            phases.put("bean initialization", beans);
+        }
+        return phases;
+    }
+
+    static Map<String, Duration> slowestBeans(List<TimelineEvent> events, int limit) {
+        return events.stream()
+                .filter(event -> BEAN_INSTANTIATE.equals(event.getStartupStep().getName()))
+                .sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+                .limit(limit)
+                .collect(Collectors.toMap(event -> tag(event.getStartupStep(), BEAN_NAME), TimelineEvent::getDuration,
+                        (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private static String tag(StartupStep step, String key) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if (key.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return null;
+    }
+}
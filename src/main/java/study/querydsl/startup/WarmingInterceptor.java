@@ -0,0 +1,47 @@
+package study.querydsl.startup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 초기 데이터를 적재하는 동안 /v1, /v2 ... API 를 503 + {"status":"warming"} 으로 응답한다.
+ * actuator 는 막지 않는다. (readiness 는 이미 UP 이다)
+ */
+@Component
+@RequiredArgsConstructor
+public class WarmingInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    static final String RETRY_AFTER_SECONDS = "5";
+    private static final String BODY = "{\"status\":\"warming\",\"message\":\"initial data is still loading\"}";
+
+    private final SeedingStatus seedingStatus;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/v*/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!seedingStatus.isWarming()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(BODY);
+        return false;
+    }
+}
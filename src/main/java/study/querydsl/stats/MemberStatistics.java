@@ -0,0 +1,253 @@
+package study.querydsl.stats;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.ConsistentReloader;
+import study.querydsl.event.MemberChangeListener;
+import study.querydsl.event.MemberRow;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 전체/팀별 회원 통계 스케치. (서로 다른 username 수, 나이 분위수, 나이 히스토그램)
+ * <p>
+ * 커밋된 변경을 받아 바로 반영하고, 조회는 테이블 크기와 상관없는 시간에 끝난다.
+ * 시작할 때와 벌크 연산 뒤에는 전체를 한 번 읽어 다시 만들고, {@link #rebuild()} 로 직접 다시 만들 수도 있다.
+ * 삭제는 HyperLogLog 에서 뺄 수 없으므로 다음 재구성 전까지 username 수는 실제보다 클 수 있다. (removalsSinceRebuild)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "querydsl.stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class MemberStatistics implements MemberChangeListener {
+
+    static final int GLOBAL_PRECISION = 14; //16KB, 0.81%
+    static final int TEAM_PRECISION = 12;   //4KB, 1.6%
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+    private final ConsistentReloader<Loaded> reloader;
+
+    //아래 필드는 this 모니터로 보호한다
+    private MemberStats global = new MemberStats(GLOBAL_PRECISION);
+    private Map<Long, MemberStats> teams = new HashMap<>();
+    private Map<Long, String> teamNames = new HashMap<>();
+    private long modCount;
+
+    public MemberStatistics(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                            @Value("${querydsl.stats.fetch-size:1000}") int fetchSize) {
+        this.queryFactory = queryFactory;
+        this.fetchSize = fetchSize;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reloader = new ConsistentReloader<>("member statistics", this, () -> modCount, version -> loadAll(),
+                this::install);
+    }
+
+    @PreDestroy
+    public void close() {
+        reloader.close();
+    }
+
+    public synchronized Map<String, Object> global(double[] quantiles) {
+        return global.toMap(quantiles);
+    }
+
+    /**
+     * 없는 팀이면 null
+     */
+    public synchronized Map<String, Object> team(Long teamId, double[] quantiles) {
+        if (!teamNames.containsKey(teamId) && !teams.containsKey(teamId)) {
+            return null;
+        }
+        return teamMap(teamId, quantiles);
+    }
+
+    public synchronized Map<Long, Map<String, Object>> teams(double[] quantiles) {
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        teamNames.keySet().stream().sorted().forEach(teamId -> result.put(teamId, teamMap(teamId, quantiles)));
+        return result;
+    }
+
+    /**
+     * 정리된 검색 조건(SearchConditionNormalizer)에 맞는 회원 수 추정값.
+     * 조건이 없거나 나이 범위만 있으면 전체 스케치로, teamName 만 있으면 그 이름의 팀 회원 수로 답한다.
+     * username 이 있거나 teamName 과 나이가 함께 있으면 추정하지 않는다. (빈 값)
+     * 커밋된 변경만 반영되어 있다.
+     */
+    public synchronized OptionalLong estimateCount(MemberSearchCondition condition) {
+        boolean ageFiltered = condition.getAgeGoe() != null || condition.getAgeLoe() != null;
+        if (condition.getUsername() != null || (condition.getTeamName() != null && ageFiltered)) {
+            return OptionalLong.empty();
+        }
+        if (condition.getTeamName() == null) {
+            return OptionalLong.of(global.countAgeBetween(condition.getAgeGoe(), condition.getAgeLoe()));
+        }
+        long count = 0;
+        for (Map.Entry<Long, String> entry : teamNames.entrySet()) {
+            MemberStats stats = teams.get(entry.getKey());
+            if (stats != null && condition.getTeamName().equals(entry.getValue())) {
+                count += stats.count();
+            }
+        }
+        return OptionalLong.of(count);
+    }
+
+    private Map<String, Object> teamMap(Long teamId, double[] quantiles) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("teamId", teamId);
+        map.put("teamName", teamNames.get(teamId));
+        map.putAll(teams.getOrDefault(teamId, new MemberStats(TEAM_PRECISION)).toMap(quantiles));
+        return map;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 전체를 forward-only 커서로 읽어 스케치를 새로 만든다. 읽는 동안 변경이 들어오면 다시 시도한다.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        Loaded loaded = reloader.reload();
+        if (loaded != null) {
+            log.info("member statistics rebuilt: members={}, teams={}, {}ms",
+                    loaded.global.count(), loaded.teamNames.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private Loaded loadAll() {
+        Loaded loaded = new Loaded();
+        transactionTemplate.executeWithoutResult(status -> load(loaded.global, loaded.teams, loaded.teamNames));
+        return loaded;
+    }
+
+    private void install(Loaded loaded) {
+        global = loaded.global;
+        teams = loaded.teams;
+        teamNames = loaded.teamNames;
+    }
+
+    private void load(MemberStats loadedGlobal, Map<Long, MemberStats> loadedTeams, Map<Long, String> loadedNames) {
+        for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loadedNames.put(tuple.get(team.id), tuple.get(team.name));
+        }
+        try (CloseableIterator<Tuple> rows = queryFactory
+                .select(member.username, member.age, member.team.id)
+                .from(member)
+                .setHint(HINT_FETCH_SIZE, fetchSize)
+                .iterate()) {
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                String username = row.get(member.username);
+                int age = row.get(member.age);
+                Long teamId = row.get(member.team.id);
+                loadedGlobal.add(username, age);
+                if (teamId != null) {
+                    loadedTeams.computeIfAbsent(teamId, id -> new MemberStats(TEAM_PRECISION)).add(username, age);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onMemberInserted(MemberRow row) {
+        add(row);
+        modCount++;
+    }
+
+    /**
+     * 변경 전 값이 없으면(before == null) 빼야 할 나이/팀을 알 수 없고 DB 에는 이미 바뀐 값만 남아 있어서 전체를 다시 만든다.
+     */
+    @Override
+    public void onMemberUpdated(MemberRow before, MemberRow after) {
+        synchronized (this) {
+            modCount++;
+            if (before != null) {
+                if (before.getAge() != after.getAge() || !Objects.equals(before.getTeamId(), after.getTeamId())
+                        || !Objects.equals(before.getUsername(), after.getUsername())) {
+                    remove(before);
+                    add(after);
+                }
+                return;
+            }
+        }
+        rebuild();
+    }
+
+    @Override
+    public synchronized void onMemberDeleted(MemberRow row) {
+        remove(row);
+        modCount++;
+    }
+
+    @Override
+    public synchronized void onTeamChanged(Long teamId, String name) {
+        teamNames.put(teamId, name);
+        modCount++;
+    }
+
+    @Override
+    public synchronized void onTeamDeleted(Long teamId) {
+        teamNames.remove(teamId);
+        teams.remove(teamId);
+        modCount++;
+    }
+
+    @Override
+    public void onBulkOperation(Class<?> entityType) {
+        if (entityType == Member.class || entityType == Team.class) {
+            synchronized (this) {
+                modCount++;
+            }
+            rebuild();
+        }
+    }
+
+    private void add(MemberRow row) {
+        global.add(row.getUsername(), row.getAge());
+        if (row.getTeamId() != null) {
+            teams.computeIfAbsent(row.getTeamId(), id -> new MemberStats(TEAM_PRECISION)).add(row.getUsername(), row.getAge());
+        }
+    }
+
+    private void remove(MemberRow row) {
+        global.remove(row.getAge());
+        MemberStats stats = row.getTeamId() == null ? null : teams.get(row.getTeamId());
+        if (stats != null) {
+            stats.remove(row.getAge());
+        }
+    }
+
+    private static final class Loaded {
+
+        private final MemberStats global = new MemberStats(GLOBAL_PRECISION);
+        private final Map<Long, MemberStats> teams = new HashMap<>();
+        private final Map<Long, String> teamNames = new HashMap<>();
+    }
+}
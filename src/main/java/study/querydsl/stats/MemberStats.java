@@ -0,0 +1,76 @@
+package study.querydsl.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 회원 집합 하나(전체 또는 팀 하나)의 스케치 묶음. 회원 수는 정확하고, 서로 다른 username 수와 나이 분포는 근사값이다.
+ * 스레드 안전하지 않다. (MemberStatistics 가 락을 잡고 쓴다)
+ */
+final class MemberStats {
+
+    static final double AGE_RELATIVE_ACCURACY = 0.01;
+    static final long AGE_HISTOGRAM_WIDTH = 10;
+
+    private final HyperLogLog usernames;
+    private final QuantileSketch ages = new QuantileSketch(AGE_RELATIVE_ACCURACY);
+    private long removals;
+
+    MemberStats(int precision) {
+        this.usernames = new HyperLogLog(precision);
+    }
+
+    void add(String username, int age) {
+        if (username != null) {
+            usernames.add(username);
+        }
+        ages.add(age);
+    }
+
+    /**
+     * 나이는 정확히 빠지지만 HyperLogLog 에서는 뺄 수 없어서 다음 재구성까지 username 수가 실제보다 클 수 있다.
+     */
+    void remove(int age) {
+        ages.remove(age);
+        removals++;
+    }
+
+    long count() {
+        return ages.count();
+    }
+
+    /**
+     * 나이가 ageGoe 이상 ageLoe 이하인 회원 수 근사값. 둘 다 null 이면 정확한 회원 수다.
+     */
+    long countAgeBetween(Integer ageGoe, Integer ageLoe) {
+        if (ageGoe == null && ageLoe == null) {
+            return count();
+        }
+        return ages.countBetween(ageGoe == null ? null : ageGoe.longValue(), ageLoe == null ? null : ageLoe.longValue());
+    }
+
+    Map<String, Object> toMap(double[] quantiles) {
+        Map<String, Object> distinct = new LinkedHashMap<>();
+        distinct.put("estimate", usernames.estimate());
+        distinct.put("relativeStandardError", usernames.relativeStandardError());
+        distinct.put("removalsSinceRebuild", removals); //0 이 아니면 estimate 는 상한에 가깝다
+
+        Map<String, Object> age = new LinkedHashMap<>();
+        age.put("relativeAccuracy", ages.relativeAccuracy());
+        for (double q : quantiles) {
+            double value = ages.quantile(q);
+            age.put("p" + format(q * 100), Double.isNaN(value) ? null : value);
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("members", count());
+        map.put("distinctUsernames", distinct);
+        map.put("age", age);
+        map.put("ageHistogram", ages.histogram(AGE_HISTOGRAM_WIDTH));
+        return map;
+    }
+
+    private static String format(double percent) {
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(percent);
+    }
+}
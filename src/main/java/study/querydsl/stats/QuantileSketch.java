@@ -0,0 +1,160 @@
+package study.querydsl.stats;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 상대 오차가 보장되는 분위수 스케치. (DDSketch)
+ * <p>
+ * 값을 gamma = (1 + a) / (1 - a) 의 거듭제곱 구간에 넣고 구간별 개수만 센다. 어떤 분위수든 돌려주는 값과
+ * 실제 값의 차이는 실제 값의 a 배 이하다. 구간 수는 값의 범위에 로그로 비례하므로 나이는 수백 개면 충분하다.
+ * 개수만 세므로 값을 빼거나({@link #remove}) 다른 스케치를 더할 수 있다. 스레드 안전하지 않다.
+ */
+final class QuantileSketch {
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+
+    private final NavigableMap<Integer, Long> positive = new TreeMap<>();
+    private final NavigableMap<Integer, Long> negative = new TreeMap<>(); //-value 의 구간
+    private long zeroCount;
+    private long count;
+
+    QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    void add(double value) {
+        update(value, 1);
+    }
+
+    /**
+     * 전에 add 한 값을 뺀다.
+     */
+    void remove(double value) {
+        update(value, -1);
+    }
+
+    private void update(double value, long delta) {
+        if (value > 0) {
+            adjust(positive, index(value), delta);
+        } else if (value < 0) {
+            adjust(negative, index(-value), delta);
+        } else {
+            zeroCount = Math.max(0, zeroCount + delta);
+        }
+        count = Math.max(0, count + delta);
+    }
+
+    long count() {
+        return count;
+    }
+
+    double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * q (0~1) 분위수. 비어 있으면 NaN
+     */
+    double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : negative.descendingMap().entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return -value(bucket.getKey());
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (Map.Entry<Integer, Long> bucket : positive.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank) {
+                return value(bucket.getKey());
+            }
+        }
+        return value(positive.lastKey());
+    }
+
+    /**
+     * width 단위 구간(구간 시작값 → 개수)으로 묶은 히스토그램. 구간 대표값을 반올림해서 나누므로
+     * 정수 값은 구간 너비(값의 2a 배)가 1 보다 작은 범위에서는 정확하다.
+     */
+    SortedMap<Long, Long> histogram(long width) {
+        SortedMap<Long, Long> histogram = new TreeMap<>();
+        negative.forEach((index, n) -> histogram.merge(band(-value(index), width), n, Long::sum));
+        if (zeroCount > 0) {
+            histogram.merge(0L, zeroCount, Long::sum);
+        }
+        positive.forEach((index, n) -> histogram.merge(band(value(index), width), n, Long::sum));
+        return histogram;
+    }
+
+    /**
+     * 정수 값 min 이상 max 이하(null 이면 경계 없음)인 값의 개수 근사값. {@link #histogram} 처럼 구간 대표값을 반올림해서 센다.
+     */
+    long countBetween(Long min, Long max) {
+        long result = 0;
+        for (Map.Entry<Integer, Long> bucket : negative.entrySet()) {
+            result += within(Math.round(-value(bucket.getKey())), min, max) ? bucket.getValue() : 0;
+        }
+        result += within(0, min, max) ? zeroCount : 0;
+        for (Map.Entry<Integer, Long> bucket : positive.entrySet()) {
+            result += within(Math.round(value(bucket.getKey())), min, max) ? bucket.getValue() : 0;
+        }
+        return result;
+    }
+
+    private static boolean within(long value, Long min, Long max) {
+        return (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("relativeAccuracy mismatch");
+        }
+        other.positive.forEach((index, n) -> adjust(positive, index, n));
+        other.negative.forEach((index, n) -> adjust(negative, index, n));
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * 구간 (gamma^(i-1), gamma^i] 의 대표값. 구간 안 어떤 값과도 상대 오차가 a 이하다.
+     */
+    private double value(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    private static long band(double value, long width) {
+        return Math.floorDiv(Math.round(value), width) * width;
+    }
+
+    private static void adjust(NavigableMap<Integer, Long> buckets, int index, long delta) {
+        long updated = buckets.getOrDefault(index, 0L) + delta;
+        if (updated > 0) {
+            buckets.put(index, updated);
+        } else {
+            buckets.remove(index);
+        }
+    }
+}
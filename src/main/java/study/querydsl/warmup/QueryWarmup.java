@@ -0,0 +1,233 @@
+package study.querydsl.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationStartupAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.index.TeamDimension;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.startup.StartupTimelineReport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 트래픽을 받기 전에 검색 쿼리 모양을 한 번씩 모두 실행해 둔다.
+ * <p>
+ * MemberSearchCondition 필드 조합 16가지(+ 나이 eq) x 검색 메서드 x 페이지/정렬 x 프로젝션을 DB 에 실행하고
+ * 결과를 Jackson 으로 직렬화해서 버린다. 하이버네이트 쿼리 플랜 캐시, Querydsl 직렬화, Jackson 직렬화기가 채워지고
+ * 같은 경로를 iterations 번 반복해서 JIT 도 어느 정도 데워진다.
+ * <p>
+ * 읽기 전용 트랜잭션 안에서 SQL 조인 모양을 데우고, TeamDimension 이 켜져 있으면 같은 조건을 트랜잭션 밖에서
+ * 한 번 더 실행해 팀 차원 모양(team_id in)도 데운다. (팀 차원은 트랜잭션 밖에서만 쓰인다)
+ * <p>
+ * ApplicationRunner 는 ApplicationReadyEvent 전에 실행되고, 스프링 부트는 그 뒤에야 readiness 를
+ * ACCEPTING_TRAFFIC 으로 바꾸므로 /actuator/health/readiness 는 워밍업이 끝난 뒤에 UP 이 된다.
+ * 실패해도 기동은 막지 않는다. (차가운 상태로 트래픽을 받을 뿐이다)
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE) //CSV import 같은 다른 러너가 끝난 데이터로 데운다
+@ConditionalOnProperty(prefix = "querydsl.warmup", name = "enabled", havingValue = "true")
+public class QueryWarmup implements ApplicationRunner, ApplicationStartupAware {
+
+    private static final Set<MemberTeamField> MEMBER_COLUMNS =
+            EnumSet.of(MemberTeamField.MEMBER_ID, MemberTeamField.USERNAME, MemberTeamField.AGE, MemberTeamField.TEAM_ID);
+
+    //offset 0 과 그 외는 limit 절 모양이 다르다. 정렬은 MemberSortResolver 가 받는 키마다 하나씩
+    private static final List<Pageable> PAGEABLES = List.of(
+            PageRequest.of(0, 20),
+            PageRequest.of(1, 20),
+            PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "age")),
+            PageRequest.of(0, 20, Sort.by("username")),
+            PageRequest.of(0, 20, Sort.by("teamId"))
+    );
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<TeamDimension> teamDimension;
+    private final TransactionTemplate transactionTemplate;
+    private final int iterations;
+    private final Duration timeout;
+
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+    private volatile Duration duration;
+
+    public QueryWarmup(MemberJpaRepository memberJpaRepository, MemberRepository memberRepository,
+                       ObjectMapper objectMapper, ObjectProvider<TeamDimension> teamDimension,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${querydsl.warmup.iterations:5}") int iterations,
+                       @Value("${querydsl.warmup.timeout-ms:20000}") long timeoutMillis) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.teamDimension = teamDimension;
+        //트랜잭션 안에서는 메모리 인덱스를 거치지 않고 DB 로 간다
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.iterations = iterations;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        TimeGauge.builder("application.warmup.duration", this, TimeUnit.MILLISECONDS,
+                        warmup -> warmup.duration == null ? 0 : warmup.duration.toMillis())
+                .description("time spent warming up query shapes before accepting traffic")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void setApplicationStartup(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    /**
+     * 워밍업에 걸린 시간. 아직 끝나지 않았으면 null
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        StartupStep step = applicationStartup.start(StartupTimelineReport.WARMUP);
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        Counts counts = new Counts();
+        int completed = 0;
+        List<MemberSearchCondition> conditions = List.of();
+        try {
+            TeamDimension.Snapshot teams = teamSnapshot();
+            //없는 팀 이름은 팀 차원에서 바로 빈 결과가 되어 쿼리까지 가지 않는다
+            String teamName = teams == null ? "warmup" : teams.names().stream().findFirst().orElse("warmup");
+            conditions = conditions(teamName);
+            List<MemberSearchCondition> shapes = conditions;
+            for (; completed < iterations && System.nanoTime() < deadline; completed++) {
+                transactionTemplate.executeWithoutResult(status -> shapes.forEach(condition -> runShapes(condition, counts)));
+                if (teams != null) {
+                    shapes.forEach(condition -> runShapes(condition, counts));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("query warm-up failed after {} iterations, accepting traffic cold", completed, e);
+        }
+        duration = Duration.ofNanos(System.nanoTime() - start);
+        step.tag("iterations", String.valueOf(completed)).end();
+        log.info("query warm-up finished: conditions={}, iterations={}/{}, queries={}, serialized={}KB, {}ms",
+                conditions.size(), completed, iterations, counts.queries, counts.bytes / 1024, duration.toMillis());
+    }
+
+    /**
+     * 팀 차원이 켜져 있으면 그 스냅샷. 러너는 ApplicationReadyEvent 전에 돌아서 아직 적재 전이면 여기서 읽는다.
+     */
+    private TeamDimension.Snapshot teamSnapshot() {
+        TeamDimension dimension = teamDimension.getIfAvailable();
+        if (dimension == null) {
+            return null;
+        }
+        if (dimension.usableSnapshot() == null) {
+            dimension.reload();
+        }
+        return dimension.usableSnapshot();
+    }
+
+    private void runShapes(MemberSearchCondition condition, Counts counts) {
+        serialize(memberJpaRepository.search(condition), null, counts);
+        serialize(memberJpaRepository.search(condition, MEMBER_COLUMNS), MEMBER_COLUMNS, counts);
+        serialize(memberJpaRepository.searchByBuilder(condition), null, counts);
+        serialize(memberRepository.search(condition), null, counts);
+        counts.queries += 4;
+
+        for (Pageable pageable : PAGEABLES) {
+            serialize(memberRepository.searchPageSimple(condition, pageable), null, counts);
+            serialize(memberRepository.searchPageComplex(condition, pageable), null, counts);
+            serialize(memberRepository.searchPageComplex(condition, pageable, MEMBER_COLUMNS), MEMBER_COLUMNS, counts);
+            counts.queries += 6; //content + count
+        }
+    }
+
+    private void serialize(Object body, Set<MemberTeamField> fields, Counts counts) {
+        ObjectWriter writer = fields == null ? objectMapper.writer() : objectMapper.writer(MemberTeamField.filters(fields));
+        CountingOutputStream out = new CountingOutputStream();
+        try {
+            writer.writeValue(out, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        counts.bytes += out.count;
+    }
+
+    /**
+     * username, teamName, ageGoe, ageLoe 를 넣고 빼는 16가지 조합과 ageGoe == ageLoe(eq) 하나.
+     * 값은 어떤 행에도 맞지 않아도 된다. 모양만 같으면 된다. (teamName 은 팀 차원에서 걸러지지 않도록 있는 팀 이름)
+     */
+    static List<MemberSearchCondition> conditions(String teamName) {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        for (int mask = 0; mask < 16; mask++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((mask & 1) != 0) {
+                condition.setUsername("warmup");
+            }
+            if ((mask & 2) != 0) {
+                condition.setTeamName(teamName);
+            }
+            if ((mask & 4) != 0) {
+                condition.setAgeGoe(0);
+            }
+            if ((mask & 8) != 0) {
+                condition.setAgeLoe(200);
+            }
+            conditions.add(condition);
+        }
+        MemberSearchCondition ageEq = new MemberSearchCondition();
+        ageEq.setAgeGoe(20);
+        ageEq.setAgeLoe(20);
+        conditions.add(ageEq);
+        return conditions;
+    }
+
+    private static final class Counts {
+        private long queries;
+        private long bytes;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
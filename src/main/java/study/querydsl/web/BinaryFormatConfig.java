@@ -0,0 +1,42 @@
+package study.querydsl.web;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * JSON 대신 바이너리로 받을 수 있는 응답 형식. Accept 헤더로 고른다.
+ * <ul>
+ *     <li>application/x-jackson-smile, application/cbor: JSON 과 같은 구조를 바이너리로</li>
+ *     <li>application/vnd.querydsl.member-columns: 회원 검색 결과 전용 열 단위 형식 ({@link MemberColumnarHttpMessageConverter})</li>
+ * </ul>
+ * 스프링 MVC 기본 Smile/CBOR 컨버터는 스프링 부트 Jackson 설정을 모르므로 MemberTeamDto 의 @JsonFilter 를 처리하지 못한다.
+ * 부트의 Jackson2ObjectMapperBuilder(필터, 모듈, 프로퍼티 설정 포함)로 만든 컨버터로 같은 자리를 바꾼다.
+ * 열 단위 컨버터는 맨 뒤에 붙여서 Accept: *&#47;* 요청은 계속 JSON 을 받는다.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatConfig implements WebMvcConfigurer {
+
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MemberColumnarHttpMessageConverter());
+    }
+}
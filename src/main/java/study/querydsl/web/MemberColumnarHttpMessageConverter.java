@@ -0,0 +1,215 @@
+package study.querydsl.web;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamJacksonValue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * MemberTeamDto 목록/페이지를 열(column) 단위 길이 접두 바이너리로 쓴다. (Accept: application/vnd.querydsl.member-columns)
+ * <p>
+ * 객체 트리를 만들지 않고 응답 스트림에 바로 쓴다. 형식은 아래와 같고 정수는 모두 zigzag varint 이다.
+ * <pre>
+ * "MTC1"
+ * kind            0 = 목록, 1 = 페이지
+ * (페이지) totalElements, number, size, totalEstimated(0/1)
+ * rows
+ * memberId        null 비트맵 + 값
+ * username        null 비트맵 + (바이트 수, UTF-8)
+ * age             값
+ * teamId          null 비트맵 + 값
+ * teamName        사전 크기, 사전 문자열들 + 행마다 사전 번호 (0 = null, i = i 번째 이름)
+ * </pre>
+ * null 비트맵은 ceil(rows / 8) 바이트이고 행 i 가 있으면 i 번째 비트가 1 이다.
+ * ?fields= 로 고르지 않은 필드도 열은 나가고 값은 null(age 는 0)이다.
+ */
+public class MemberColumnarHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = new MediaType("application", "vnd.querydsl.member-columns");
+
+    static final byte[] MAGIC = "MTC1".getBytes(StandardCharsets.US_ASCII);
+    static final int KIND_LIST = 0;
+    static final int KIND_PAGE = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public MemberColumnarHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz) || Page.class.isAssignableFrom(clazz)
+                || MappingJacksonValue.class.isAssignableFrom(clazz);
+    }
+
+    /**
+     * 요소 타입이 MemberTeamDto 인 목록/페이지만 쓴다. MappingJacksonValue 는 값을 볼 수 없으므로
+     * 안에 MemberTeamDto 가 든 것이 타입으로 보장되는 {@link MemberTeamJacksonValue}(/v1, /v3)만 쓴다.
+     */
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!supports(clazz) || !canWrite(mediaType)) {
+            return false;
+        }
+        if (MappingJacksonValue.class.isAssignableFrom(clazz)) {
+            return MemberTeamJacksonValue.class.isAssignableFrom(clazz);
+        }
+        ResolvableType resolved = type == null ? ResolvableType.forClass(clazz) : ResolvableType.forType(type);
+        Class<?> element = resolved.as(Iterable.class).getGeneric(0).resolve(Object.class);
+        return MemberTeamDto.class.isAssignableFrom(element);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("member columns are write-only", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("member columns are write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Object value = body instanceof MappingJacksonValue ? ((MappingJacksonValue) body).getValue() : body;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody(), BUFFER_SIZE));
+        if (value instanceof Page) {
+            Page<?> page = (Page<?>) value;
+            out.write(MAGIC);
+            writeVarLong(out, KIND_PAGE);
+            writeVarLong(out, page.getTotalElements());
+            writeVarLong(out, page.getNumber());
+            writeVarLong(out, page.getSize());
+            out.writeByte(page instanceof EstimatedPage && ((EstimatedPage<?>) page).isTotalEstimated() ? 1 : 0);
+            writeRows(out, rows(page.getContent()));
+        } else if (value instanceof List) {
+            out.write(MAGIC);
+            writeVarLong(out, KIND_LIST);
+            writeRows(out, rows((List<?>) value));
+        } else {
+            throw new HttpMessageNotWritableException("not a MemberTeamDto list or page: " + value);
+        }
+        out.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<MemberTeamDto> rows(List<?> content) {
+        for (Object row : content) {
+            if (!(row instanceof MemberTeamDto)) {
+                throw new HttpMessageNotWritableException("not a MemberTeamDto: " + row);
+            }
+        }
+        return (List<MemberTeamDto>) content;
+    }
+
+    private static void writeRows(DataOutputStream out, List<MemberTeamDto> rows) throws IOException {
+        int n = rows.size();
+        writeVarLong(out, n);
+
+        writeNulls(out, rows, row -> row.getMemberId() != null);
+        for (MemberTeamDto row : rows) {
+            if (row.getMemberId() != null) {
+                writeVarLong(out, row.getMemberId());
+            }
+        }
+
+        writeNulls(out, rows, row -> row.getUsername() != null);
+        for (MemberTeamDto row : rows) {
+            if (row.getUsername() != null) {
+                writeString(out, row.getUsername());
+            }
+        }
+
+        for (MemberTeamDto row : rows) {
+            writeVarLong(out, row.getAge());
+        }
+
+        writeNulls(out, rows, row -> row.getTeamId() != null);
+        for (MemberTeamDto row : rows) {
+            if (row.getTeamId() != null) {
+                writeVarLong(out, row.getTeamId());
+            }
+        }
+
+        //팀 이름은 몇 개 안 되는 값이 반복되므로 사전으로 쓴다
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i++) {
+            String teamName = rows.get(i).getTeamName();
+            codes[i] = teamName == null ? 0 : dictionary.computeIfAbsent(teamName, k -> dictionary.size() + 1);
+        }
+        String[] names = new String[dictionary.size()];
+        dictionary.forEach((name, code) -> names[code - 1] = name);
+        writeVarLong(out, names.length);
+        for (String name : names) {
+            writeString(out, name);
+        }
+        for (int code : codes) {
+            writeVarLong(out, code);
+        }
+    }
+
+    private static void writeNulls(DataOutputStream out, List<MemberTeamDto> rows,
+                                   Predicate<MemberTeamDto> present) throws IOException {
+        int bits = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (present.test(rows.get(i))) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7) {
+                out.writeByte(bits);
+                bits = 0;
+            }
+        }
+        if ((rows.size() & 7) != 0) {
+            out.writeByte(bits);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * zigzag + LEB128. 절댓값이 작은 수일수록 짧다 (0~63 은 1바이트)
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+}
@@ -0,0 +1,237 @@
+package study.querydsl.writebehind;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.HibernateCommitEventBridge;
+import study.querydsl.event.MemberRow;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * member.age 증가분(bulkAdd 의 age + 1 같은 변경)을 메모리에 모았다가 한 번에 반영한다. (write-behind)
+ * <p>
+ * {@link #add} 는 회원별 LongAdder 에 더하기만 하므로 락도 DB 왕복도 없고, 같은 회원에 몰려도 코어 수만큼 처리량이 늘어난다.
+ * 모인 증가분은 flush-interval-ms 마다, 또는 쌓인 회원 수가 max-pending 을 넘으면 회원별 합계 하나씩
+ * update ... set age = age + ? JDBC 배치로 쓴다. 정상 종료할 때도 남은 증가분을 쓴다.
+ * <p>
+ * 아직 쓰지 않은 증가분까지 보려면 {@link #currentAge} 로 읽는다. (read-your-writes)
+ * 반영한 회원은 2차 캐시에서 지우고 MemberChangeListener 에 onMemberUpdated 로 알린다.
+ * 이 버퍼를 쓰는 동안 같은 회원의 age 를 엔티티로 고치면 덮어쓸 수 있으므로 age 증가는 이 버퍼로만 한다.
+ */
+@Slf4j
+@Component
+public class MemberAgeWriteBehind {
+
+    private static final String UPDATE_SQL = "update member set age = age + ? where member_id = ?";
+    private static final String SELECT_SQL = "select member_id, username, age, team_id from member where member_id in (:ids)";
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory emf;
+    private final HibernateCommitEventBridge eventBridge;
+    private final int maxPending;
+    private final int batchSize;
+
+    private volatile Generation current = new Generation();
+    private volatile boolean closed;
+
+    //flush 가 세대를 바꾸고 커밋할 때까지 write lock 을 잡는다. currentAge 는 read lock 으로 그 사이를 피한다.
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-age-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MemberAgeWriteBehind(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                                PlatformTransactionManager transactionManager, EntityManagerFactory emf,
+                                HibernateCommitEventBridge eventBridge,
+                                @Value("${querydsl.write-behind.max-pending:10000}") int maxPending,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.emf = emf;
+        this.eventBridge = eventBridge;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+    }
+
+    public void add(Long memberId, int delta) {
+        while (true) {
+            Generation generation = current;
+            generation.writers.increment();
+            try {
+                //writers 에 올린 뒤에 본다. close 는 closed 를 세운 뒤 세대를 바꾸므로
+                //여기서 closed 가 false 면 마지막 flush 가 이 세대를 기다려 같이 쓴다
+                if (closed) {
+                    throw new IllegalStateException("member age write-behind is closed");
+                }
+                //flush 가 세대를 바꾼 뒤라면 새 세대에 다시 더한다
+                if (generation == current) {
+                    generation.deltas.computeIfAbsent(memberId, id -> new LongAdder()).add(delta);
+                    if (generation.deltas.size() >= maxPending) {
+                        requestFlush();
+                    }
+                    return;
+                }
+            } finally {
+                generation.writers.decrement();
+            }
+        }
+    }
+
+    /**
+     * 아직 DB 에 쓰지 않은 증가분
+     */
+    public long pendingDelta(Long memberId) {
+        LongAdder delta = current.deltas.get(memberId);
+        return delta == null ? 0 : delta.sum();
+    }
+
+    /**
+     * DB 값 + 아직 쓰지 않은 증가분. 없는 회원이면 null
+     */
+    public Integer currentAge(Long memberId) {
+        flushLock.readLock().lock();
+        try {
+            List<Integer> ages = jdbcTemplate.queryForList("select age from member where member_id = ?", Integer.class, memberId);
+            return ages.isEmpty() ? null : ages.get(0) + (int) pendingDelta(memberId);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.write-behind.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 모인 증가분을 하나의 트랜잭션으로 쓴다. 실패하면 증가분을 되돌려 두고 다음 flush 때 다시 쓴다.
+     *
+     * @return 반영한 회원 수
+     */
+    public int flush() {
+        flushLock.writeLock().lock();
+        try {
+            Generation flushing = current;
+            current = new Generation();
+            //세대를 바꾸기 전에 들어온 add 가 끝날 때까지 기다린다. (한 번 더하는 시간이라 짧다)
+            while (flushing.writers.sum() != 0) {
+                Thread.onSpinWait();
+            }
+
+            Map<Long, Long> deltas = new HashMap<>();
+            flushing.deltas.forEach((memberId, delta) -> {
+                long sum = delta.sum();
+                if (sum != 0) {
+                    deltas.put(memberId, sum);
+                }
+            });
+            if (deltas.isEmpty()) {
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(deltas));
+            } catch (RuntimeException e) {
+                deltas.forEach((memberId, delta) ->
+                        current.deltas.computeIfAbsent(memberId, id -> new LongAdder()).add(delta));
+                log.warn("member age write-behind flush failed, {} members kept for retry", deltas.size(), e);
+                throw e;
+            }
+            deltas.keySet().forEach(memberId -> emf.getCache().evict(Member.class, memberId));
+            log.debug("member age write-behind flushed {} members in {}ms", deltas.size(), (System.nanoTime() - start) / 1_000_000);
+            return deltas.size();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void write(Map<Long, Long> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((memberId, delta) -> args.add(new Object[]{delta, memberId}));
+        jdbcTemplate.batchUpdate(UPDATE_SQL, args, batchSize, (ps, arg) -> {
+            ps.setLong(1, (Long) arg[0]);
+            ps.setLong(2, (Long) arg[1]);
+        });
+
+        //바뀐 뒤 행을 읽어 커밋 이후에 알린다
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_SIZE, ids.size()));
+            namedJdbcTemplate.query(SELECT_SQL, Map.of("ids", chunk), rs -> {
+                long memberId = rs.getLong("member_id");
+                long teamId = rs.getLong("team_id");
+                boolean noTeam = rs.wasNull();
+                MemberRow after = new MemberRow(memberId, rs.getString("username"), rs.getInt("age"),
+                        noTeam ? null : teamId);
+                MemberRow before = new MemberRow(memberId, after.getUsername(),
+                        (int) (after.getAge() - deltas.get(memberId)), after.getTeamId());
+                eventBridge.publishMemberUpdated(before, after);
+            });
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    //로그는 flush 에서 남겼고 증가분은 남아 있다
+                } finally {
+                    flushRequested.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 이후 add 는 IllegalStateException 이다. 그 전에 끝난 add 는 모두 쓴다.
+     */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        flushExecutor.shutdown();
+        int flushed = 0;
+        //flush 는 바꾼 세대의 writers 가 빠지길 기다린다. 새 세대에 남은 증가분이 없을 때까지 쓴다
+        do {
+            flushed += flush();
+        } while (!current.deltas.isEmpty());
+        log.info("member age write-behind closed, flushed {} members", flushed);
+    }
+
+    /**
+     * 한 번의 flush 에 들어가는 증가분. writers 는 지금 이 세대에 더하고 있는 add 호출 수다.
+     */
+    private static final class Generation {
+
+        private final ConcurrentHashMap<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+        private final LongAdder writers = new LongAdder();
+    }
+}
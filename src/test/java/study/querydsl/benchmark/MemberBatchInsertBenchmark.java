@@ -0,0 +1,72 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * saveAll 배치 크기별 초당 insert 건수. ./gradlew benchmark 로 실행한다.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "logging.level.org.hibernate.SQL=info")
+public class MemberBatchInsertBenchmark {
+
+    private static final int ROWS = 20_000;
+    private static final int[] BATCH_SIZES = {1, 50, 500, 5000};
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void saveAllRowsPerSecond() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        //워밍업
+        tx.executeWithoutResult(status -> memberJpaRepository.saveAll(newMembers(null, ROWS / 10), 50));
+        tx.executeWithoutResult(status -> memberJpaRepository.bulkDelete(member, delete -> delete));
+
+        System.out.printf("%10s %12s %12s%n", "batchSize", "rows", "rows/sec");
+        for (int batchSize : BATCH_SIZES) {
+            long elapsed = tx.execute(status -> {
+                Team team = new Team("bench");
+                em.persist(team);
+                List<Member> members = newMembers(team, ROWS);
+
+                long start = System.nanoTime();
+                memberJpaRepository.saveAll(members, batchSize);
+                return System.nanoTime() - start;
+            });
+            System.out.printf("%10d %12d %12.0f%n", batchSize, ROWS, ROWS / (elapsed / 1e9));
+
+            tx.executeWithoutResult(status -> memberJpaRepository.bulkDelete(member, delete -> delete));
+        }
+    }
+
+    private List<Member> newMembers(Team team, int count) {
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Member m = new Member("bench" + i, i % 100);
+            m.setTeam(team); //team.members 에 쌓지 않는다
+            members.add(m);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.web.MemberColumnarHttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 회원 검색 결과 10,000 행을 응답 형식별로 쓸 때의 바이트 수와 CPU 시간. ./gradlew benchmark 로 실행한다.
+ * <p>
+ * 모두 응답 스트림(여기서는 바이트만 세는 스트림)에 바로 쓴다. Jackson 형식은 부트와 같은 필터 설정으로 만든다.
+ */
+@Tag("benchmark")
+public class ResponseFormatBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void bytesAndCpuPer10kRows() throws Exception {
+        List<MemberTeamDto> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new MemberTeamDto((long) i + 1, "member" + i, i % 100, (long) (i % 2) + 1, i % 2 == 0 ? "teamA" : "teamB"));
+        }
+        PageImpl<MemberTeamDto> page = new PageImpl<>(rows, PageRequest.of(0, ROWS), 1_000_000);
+
+        ObjectWriter json = jackson(Jackson2ObjectMapperBuilder.json());
+        ObjectWriter smile = jackson(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()));
+        ObjectWriter cbor = jackson(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()));
+        run("json", body -> json.writeValue(body, page));
+        run("smile", body -> smile.writeValue(body, page));
+        run("cbor", body -> cbor.writeValue(body, page));
+
+        MemberColumnarHttpMessageConverter converter = new MemberColumnarHttpMessageConverter();
+        run("columns", body -> converter.write(page, null, MemberColumnarHttpMessageConverter.MEDIA_TYPE, message(body)));
+    }
+
+    private static ObjectWriter jackson(Jackson2ObjectMapperBuilder builder) {
+        return builder.filters(MemberTeamField.allFields()).build().writer();
+    }
+
+    private void run(String name, Write write) throws IOException {
+        CountingOutputStream body = new CountingOutputStream();
+        for (int i = 0; i < WARMUP; i++) {
+            write.to(body);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        body.count = 0;
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            write.to(body);
+        }
+        long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+
+        System.out.printf("%-8s %10d bytes/10k rows %8.3f ms cpu/10k rows%n",
+                name, body.count / ITERATIONS, cpu / 1_000_000.0 / ITERATIONS);
+    }
+
+    private static HttpOutputMessage message(OutputStream body) {
+        HttpHeaders headers = new HttpHeaders();
+        return new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void to(OutputStream body) throws IOException;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
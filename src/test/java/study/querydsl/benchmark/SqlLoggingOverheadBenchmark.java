@@ -0,0 +1,97 @@
+package study.querydsl.benchmark;
+
+import com.p6spy.engine.spy.P6DataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import study.querydsl.sql.InstrumentedDataSource;
+import study.querydsl.sql.SlowQueryRecorder;
+import study.querydsl.sql.SqlLogSampler;
+import study.querydsl.sql.SqlLogWriter;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL 로그 방식별 문장 하나당 시간과 할당량. ./gradlew benchmark 로 실행한다.
+ * <p>
+ * raw: 감싸지 않음 / sampled: querydsl.sql-log 기본값(1% 샘플링)만 /
+ * recorder: querydsl.slow-query 기본값만 / default: application.yml 처럼 둘 다 /
+ * p6spy: 기존 설정처럼 모든 문장을 포맷해서 파일로
+ * <p>
+ * 느린 SQL 기록이 켜져 있으면 어떤 문장이 느릴지 미리 모르므로 모든 PreparedStatement 가 바인딩 값을 모은다.
+ * 기본 설정의 비용은 sampled 가 아니라 default 줄이다.
+ * (하이버네이트 format_sql 비용은 JDBC 아래가 아니라서 여기서는 재지 않는다)
+ */
+@Tag("benchmark")
+public class SqlLoggingOverheadBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    public void overheadPerStatement() throws Exception {
+        System.setProperty("p6spy.config.appender", "com.p6spy.engine.spy.appender.FileLogger");
+        System.setProperty("p6spy.config.logfile", "build/p6spy-benchmark.log");
+
+        DriverManagerDataSource h2 = new DriverManagerDataSource("jdbc:h2:mem:sqlbench;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = h2.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table bench_member (id bigint primary key, username varchar(255), age int)");
+            for (int i = 0; i < ROWS; i++) {
+                statement.execute("insert into bench_member values (" + i + ", 'member" + i + "', " + (i % 100) + ")");
+            }
+        }
+
+        try (SqlLogWriter writer = new SqlLogWriter(4096)) {
+            run("raw", h2);
+            SqlLogSampler sampler = new SqlLogSampler(0.01, TimeUnit.MILLISECONDS.toNanos(200), writer);
+            run("sampled", new InstrumentedDataSource(h2, sampler, null));
+            run("recorder", new InstrumentedDataSource(h2, null, slowQueryRecorder()));
+            run("default", new InstrumentedDataSource(h2, sampler, slowQueryRecorder()));
+            run("p6spy", new P6DataSource(h2));
+        }
+    }
+
+    private static SlowQueryRecorder slowQueryRecorder() {
+        return new SlowQueryRecorder(100, 200, true);
+    }
+
+    private void run(String name, DataSource dataSource) throws Exception {
+        //커넥션 획득 비용은 빼고 문장 실행만 잰다
+        SingleConnectionDataSource single = new SingleConnectionDataSource(dataSource.getConnection(), true);
+        try (Connection connection = single.getConnection()) {
+            execute(connection, WARMUP);
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            execute(connection, ITERATIONS);
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            System.out.printf("%-8s %8.2f us/stmt %8d bytes/stmt%n",
+                    name, elapsed / 1000.0 / ITERATIONS, allocated / ITERATIONS);
+        } finally {
+            single.destroy();
+        }
+    }
+
+    private void execute(Connection connection, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            try (PreparedStatement ps = connection.prepareStatement("select username, age from bench_member where id = ?")) {
+                ps.setLong(1, i % ROWS);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                }
+            }
+        }
+    }
+}
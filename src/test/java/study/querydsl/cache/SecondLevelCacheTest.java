@@ -0,0 +1,151 @@
+package study.querydsl.cache;
+
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 2차 캐시는 트랜잭션(영속성 컨텍스트)이 바뀌어야 보이므로 @Transactional 없이 TransactionTemplate 으로 나눠 실행한다.
+ */
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    private static final String MEMBER_REGION = Member.class.getName();
+    private static final String TEAM_REGION = Team.class.getName();
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    SecondLevelCacheInvalidator invalidator;
+
+    @Autowired
+    CacheStatisticsEndpoint cacheStatisticsEndpoint;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transactionTemplate;
+    Statistics statistics;
+    Cache cache;
+    Long memberId;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        memberId = transactionTemplate.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            Member member1 = new Member("member1", 10, teamA);
+            em.persist(member1);
+            return member1.getId();
+        });
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        cache = sessionFactory.getCache();
+        cache.evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+        });
+    }
+
+    @Test
+    public void findByIdAndLazyTeamHitCache() {
+        assertThat(loadTeamName()).isEqualTo("teamA"); //처음은 DB 에서 읽고 캐시에 넣는다
+        assertThat(statistics.getDomainDataRegionStatistics(MEMBER_REGION).getHitCount()).isZero();
+
+        assertThat(loadTeamName()).isEqualTo("teamA"); //새 영속성 컨텍스트
+
+        assertThat(statistics.getDomainDataRegionStatistics(MEMBER_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(TEAM_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(2);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> memberStats = (Map<String, Object>) cacheStatisticsEndpoint.cacheStatistics().get(MEMBER_REGION);
+        assertThat(memberStats).containsEntry("hits", 1L);
+    }
+
+    @Test
+    public void findByUsernameHitsQueryCache() {
+        findByUsername();
+        assertThat(statistics.getQueryCacheHitCount()).isZero();
+
+        findByUsername();
+
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkUpdateEvictsMemberAndQueryRegions() {
+        loadTeamName();
+        findByUsername();
+        assertThat(cache.containsEntity(Member.class, memberId)).isTrue();
+
+        transactionTemplate.executeWithoutResult(status ->
+                memberJpaRepository.bulkUpdate(member, update -> update.set(member.age, member.age.add(1))));
+
+        assertThat(cache.containsEntity(Member.class, memberId)).isFalse();
+        long hits = statistics.getQueryCacheHitCount();
+        assertThat(findByUsername().getAge()).isEqualTo(11); //비워진 쿼리 캐시 대신 DB 에서 읽는다
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits);
+    }
+
+    @Test
+    public void invalidatorEvictsWithoutDatabaseChange() {
+        loadTeamName();
+        findByUsername();
+
+        //JDBC 로 직접 쓴 경우처럼 하이버네이트가 모르는 변경
+        invalidator.onBulkOperation(Member.class);
+
+        assertThat(cache.containsEntity(Member.class, memberId)).isFalse();
+        assertThat(cache.containsEntity(Team.class, loadTeamId())).isTrue();
+        long hits = statistics.getQueryCacheHitCount();
+        findByUsername();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits);
+    }
+
+    private String loadTeamName() {
+        return transactionTemplate.execute(status ->
+                memberJpaRepository.findById(memberId).orElseThrow().getTeam().getName());
+    }
+
+    private Long loadTeamId() {
+        return transactionTemplate.execute(status ->
+                memberJpaRepository.findById(memberId).orElseThrow().getTeam().getId());
+    }
+
+    private Member findByUsername() {
+        return transactionTemplate.execute(status -> memberJpaRepository.findByUsername("member1").get(0));
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import study.querydsl.async.DatabaseExecutor;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.CoalescingMemberRepository;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * DatabaseExecutor 스레드는 커넥션 풀 크기(기본 10)이고 대기열은 1로 줄여서 거절을 본다.
+ */
+@SpringBootTest(properties = "querydsl.async.queue-capacity=1")
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    private static final int DB_THREADS = 10;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    DatabaseExecutor databaseExecutor;
+
+    @SpyBean
+    CoalescingMemberRepository coalescingMemberRepository;
+
+    @Test
+    public void searchAsync() throws Exception {
+        AtomicReference<String> queryThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            queryThread.set(Thread.currentThread().getName());
+            return invocation.callRealMethod();
+        }).when(coalescingMemberRepository).searchPageComplex(any(MemberSearchCondition.class), any(Pageable.class));
+
+        MvcResult result = mockMvc.perform(get("/v3/members/async")
+                        .param("ageGoe", "200")
+                        .param("size", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").isEmpty())
+                .andExpect(jsonPath("$.size").value(5));
+
+        //요청 스레드가 아닌 DB 전용 스레드에서 실행된다
+        assertThat(queryThread.get()).startsWith("db-query-");
+    }
+
+    @Test
+    public void searchAsyncRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return Page.empty();
+        }).when(coalescingMemberRepository).searchPageComplex(any(MemberSearchCondition.class), any(Pageable.class));
+
+        try {
+            //스레드 수만큼 실행 중, 1개는 대기열
+            for (int i = 0; i < DB_THREADS + 1; i++) {
+                mockMvc.perform(get("/v3/members/async")).andExpect(request().asyncStarted());
+            }
+            mockMvc.perform(get("/v3/members/async"))
+                    .andExpect(status().isServiceUnavailable());
+        } finally {
+            release.countDown();
+            while (databaseExecutor.getActiveCount() > 0 || databaseExecutor.getQueueSize() > 0) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void searchAsyncTimeoutCancelsQuery() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Page.empty();
+        }).when(coalescingMemberRepository).searchPageComplex(any(MemberSearchCondition.class), any(Pageable.class));
+
+        MvcResult result = mockMvc.perform(get("/v3/members/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //MockMvc 는 request-timeout 을 세지 않으므로 컨테이너처럼 시간 초과를 알린다
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void statsRejectsQuantileOutOfRange() throws Exception {
+        mockMvc.perform(get("/v1/stats/members").param("q", "0.5,1.5"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/stats/teams").param("q", "-0.1"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v1/stats/members").param("q", "0,1"))
+                .andExpect(status().isOk());
+    }
+}
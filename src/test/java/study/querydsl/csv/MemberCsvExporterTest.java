@@ -0,0 +1,88 @@
+package study.querydsl.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberCsvExporterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberCsvExporter exporter;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void exportToStream() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("kim, \"jr\"", 20));
+        em.flush();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter.export(out, false);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(rows).isEqualTo(2);
+        assertThat(lines[0]).isEqualTo("memberId,username,age,teamId,teamName");
+        assertThat(lines).anyMatch(line -> line.endsWith(",member1,10," + teamA.getId() + ",teamA"));
+        assertThat(lines).anyMatch(line -> line.endsWith(",\"kim, \"\"jr\"\"\",20,,"));
+    }
+
+    @Test
+    public void exportToGzipFile() throws Exception {
+        em.persist(new Member("회원1", 10));
+        em.flush();
+
+        Path file = tempDir.resolve("members.csv.gz");
+        exporter.exportToFile(file, true);
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            List<String> lines = List.of(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\r\n"));
+            assertThat(lines).hasSize(2);
+            assertThat(lines.get(1)).contains(",회원1,10,,");
+        }
+    }
+
+    @Test
+    public void unpairedSurrogateIsValidUtf8() throws Exception {
+        em.persist(new Member("a\uD800b", 10));
+        em.persist(new Member("\uD83D\uDE00", 20)); //짝이 맞으면 4바이트 그대로
+        em.flush();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(out, false);
+
+        //잘못된 바이트가 있으면 예외를 던지는 디코더
+        String csv = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(out.toByteArray()))
+                .toString();
+        assertThat(csv).contains(",a?b,10,,");
+        assertThat(csv).contains(",\uD83D\uDE00,20,,");
+    }
+}
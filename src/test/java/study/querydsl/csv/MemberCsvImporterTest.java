@@ -0,0 +1,114 @@
+package study.querydsl.csv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 가져오기는 커밋 단위로 트랜잭션을 직접 여닫으므로 @Transactional 없이 실행하고 끝나면 지운다.
+ */
+@SpringBootTest(properties = "querydsl.import.commit-interval=2")
+class MemberCsvImporterTest {
+
+    @Autowired
+    MemberCsvImporter importer;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManager em;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+            em.createQuery("delete from ImportCheckpoint").executeUpdate();
+        });
+    }
+
+    @Test
+    public void importAndResume() throws Exception {
+        Path file = tempDir.resolve("members.csv");
+        Files.writeString(file, "username,age,teamName\r\n"
+                + "member1,10,teamA\r\n"
+                + "\"kim, jr\",20,teamA\r\n"
+                + "member3,abc,teamB\r\n"
+                + "member4,40,\r\n", StandardCharsets.UTF_8);
+
+        ImportReport report = importer.importFile(file);
+
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(Files.readString(tempDir.resolve("members.csv.rejects"))).isEqualTo("member3,abc,teamB\n");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        List<MemberTeamDto> teamA = memberJpaRepository.search(condition);
+        assertThat(teamA).extracting("username").containsExactly("member1", "kim, jr");
+
+        //이미 끝까지 커밋했으므로 다시 실행해도 추가되지 않는다
+        Files.writeString(file, "member5,50,teamB\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        ImportReport resumed = importer.importFile(file);
+        assertThat(resumed.getResumedFromOffset()).isEqualTo(report.getCommittedOffset());
+        assertThat(resumed.getImported()).isEqualTo(1);
+    }
+
+    @Test
+    public void resumeDropsRejectsOfUncommittedInterval() throws Exception {
+        Path file = tempDir.resolve("members.csv");
+        Path rejects = tempDir.resolve("members.csv.rejects");
+        Files.writeString(file, "member1,x,teamA\n", StandardCharsets.UTF_8);
+        importer.importFile(file);
+        assertThat(Files.readString(rejects)).isEqualTo("member1,x,teamA\n");
+
+        //rejects 를 쓰고 커밋 전에 죽은 구간
+        Files.writeString(rejects, "member2,y,teamA\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Files.writeString(file, "member2,y,teamA\nmember3,30,teamA\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        ImportReport resumed = importer.importFile(file);
+
+        assertThat(resumed.getImported()).isEqualTo(1);
+        assertThat(resumed.getRejected()).isEqualTo(1);
+        assertThat(Files.readString(rejects)).isEqualTo("member1,x,teamA\nmember2,y,teamA\n");
+        assertThat(tempDir.resolve("members.csv.offset")).doesNotExist();
+    }
+
+    @Test
+    public void onlyFullHeaderRowIsSkipped() throws Exception {
+        Path file = tempDir.resolve("members.csv");
+        Files.writeString(file, "username,10,teamA\n", StandardCharsets.UTF_8);
+
+        ImportReport report = importer.importFile(file);
+
+        assertThat(report.getImported()).isEqualTo(1);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("username");
+        assertThat(memberJpaRepository.search(condition)).extracting("age").containsExactly(10);
+    }
+}
@@ -0,0 +1,199 @@
+package study.querydsl.index;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberRow;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋된 변경만 인덱스에 들어가므로 @Transactional 없이 실행하고 끝나면 지운다.
+ * 스냅샷 갱신은 테스트에서 직접 부르도록 refresh-delay-ms 를 길게 둔다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.search-index.enabled=true",
+        "querydsl.search-index.refresh-delay-ms=600000"
+})
+class MemberSearchIndexTest {
+
+    @Autowired
+    MemberSearchIndex searchIndex;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 20; i++) {
+                em.persist(new Member("member" + (i % 7), i * 5, i % 3 == 0 ? null : i % 3 == 1 ? teamA : teamB));
+            }
+        });
+        searchIndex.rebuild();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+        });
+    }
+
+    @Test
+    public void searchMatchesDatabaseForEveryConditionShape() {
+        assertThat(searchIndex.isReady()).isTrue();
+
+        for (MemberSearchCondition condition : conditions()) {
+            //트랜잭션 안에서는 인덱스를 거치지 않고 DB 로 조회한다
+            List<MemberTeamDto> fromDatabase = transactionTemplate.execute(status -> memberJpaRepository.search(condition));
+            List<MemberTeamDto> fromIndex = searchIndex.search(condition);
+
+            assertThat(fromIndex).as(condition.toString()).containsExactlyInAnyOrderElementsOf(fromDatabase);
+            assertThat(memberJpaRepository.search(condition)).as(condition.toString())
+                    .containsExactlyInAnyOrderElementsOf(fromDatabase);
+        }
+    }
+
+    @Test
+    public void changesAreServedAfterRefresh() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("newbie");
+
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("newbie", 33)));
+
+        //다시 만들기 전까지는 이전 스냅샷으로 검색한다
+        assertThat(searchIndex.search(condition)).isEmpty();
+
+        searchIndex.refreshSnapshot();
+        assertThat(searchIndex.search(condition)).extracting("username", "age")
+                .containsExactly(tuple("newbie", 33));
+    }
+
+    @Test
+    public void rebuildRetriesWhenChangedWhileLoading() {
+        AtomicInteger loads = new AtomicInteger();
+        MemberSearchIndex index = new MemberSearchIndex(queryFactory, transactionManager, 600_000) {
+            @Override
+            void load(Map<Long, MemberRow> loadedMembers, Map<Long, String> loadedTeams) {
+                super.load(loadedMembers, loadedTeams);
+                if (loads.incrementAndGet() == 1) {
+                    onTeamChanged(-1L, "changed while loading");
+                }
+            }
+        };
+        try {
+            index.rebuild();
+
+            assertThat(loads).hasValue(2);
+            assertThat(index.isReady()).isTrue();
+            MemberSearchCondition all = new MemberSearchCondition();
+            assertThat(index.search(all)).containsExactlyInAnyOrderElementsOf(
+                    transactionTemplate.execute(status -> memberJpaRepository.search(all)));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void rebuildRetriesInBackgroundAfterGivingUp() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        MemberSearchIndex index = new MemberSearchIndex(queryFactory, transactionManager, 600_000) {
+            @Override
+            void load(Map<Long, MemberRow> loadedMembers, Map<Long, String> loadedTeams) {
+                super.load(loadedMembers, loadedTeams);
+                int load = loads.incrementAndGet();
+                if (load <= 3) {
+                    onTeamChanged(-1L, "changed while loading " + load);
+                }
+            }
+        };
+        try {
+            index.rebuild();
+
+            assertThat(loads).hasValue(3);
+            assertThat(index.isReady()).isFalse(); //호출하는 쪽은 DB 로 조회한다
+
+            //변경이 멈추면 백그라운드 재시도(1초 뒤)로 다시 준비된다
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!index.isReady() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(index.isReady()).isTrue();
+            assertThat(loads).hasValue(4);
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * username, teamName, ageGoe, ageLoe 를 넣고 빼는 16가지 조합, 나이 eq, 없는 값
+     */
+    private static List<MemberSearchCondition> conditions() {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        for (int mask = 0; mask < 16; mask++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((mask & 1) != 0) {
+                condition.setUsername("member3");
+            }
+            if ((mask & 2) != 0) {
+                condition.setTeamName("teamB");
+            }
+            if ((mask & 4) != 0) {
+                condition.setAgeGoe(15);
+            }
+            if ((mask & 8) != 0) {
+                condition.setAgeLoe(70);
+            }
+            conditions.add(condition);
+        }
+
+        MemberSearchCondition ageEq = new MemberSearchCondition();
+        ageEq.setAgeGoe(25);
+        ageEq.setAgeLoe(25);
+        conditions.add(ageEq);
+
+        MemberSearchCondition unknown = new MemberSearchCondition();
+        unknown.setUsername("nobody");
+        unknown.setTeamName("teamZ");
+        conditions.add(unknown);
+        return conditions;
+    }
+}
@@ -0,0 +1,106 @@
+package study.querydsl.index;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋된 팀만 스냅샷에 들어가므로 @Transactional 없이 실행하고 끝나면 지운다.
+ */
+@SpringBootTest(properties = "querydsl.team-dimension.enabled=true")
+class TeamDimensionTest {
+
+    @Autowired
+    TeamDimension teamDimension;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+        });
+    }
+
+    @Test
+    public void searchWithoutTeamJoin() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamB));
+            em.persist(new Member("member3", 30));
+        });
+        assertThat(teamDimension.usableSnapshot().idsByName("teamB")).containsExactly(teamB.getId());
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertThat(memberRepository.search(condition)).extracting("username", "teamName")
+                .containsExactly(tuple("member2", "teamB"));
+        assertThat(memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 10)).getContent())
+                .extracting("teamName").containsExactlyInAnyOrder("teamA", "teamB", null);
+        assertThat(statistics.getQueries()).isNotEmpty()
+                .noneMatch(query -> query.toLowerCase().contains("join"));
+
+        //모르는 팀 이름은 DB 에 가지 않는다
+        long queries = statistics.getQueryExecutionCount();
+        condition.setTeamName("teamC");
+        assertThat(memberRepository.search(condition)).isEmpty();
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(queries);
+    }
+
+    @Test
+    public void renamedTeamIsSwappedIn() {
+        Team teamA = new Team("teamA");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+        });
+        TeamDimension.Snapshot before = teamDimension.usableSnapshot();
+
+        transactionTemplate.executeWithoutResult(status -> em.find(Team.class, teamA.getId()).setName("teamZ"));
+
+        assertThat(before.name(teamA.getId())).isEqualTo("teamA"); //이미 받은 스냅샷은 바뀌지 않는다
+        assertThat(teamDimension.usableSnapshot().name(teamA.getId())).isEqualTo("teamZ");
+        assertThat(memberJpaRepository.search(new MemberSearchCondition())).extracting("teamName").containsExactly("teamZ");
+    }
+}
@@ -0,0 +1,153 @@
+package study.querydsl.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.loadtest.OpenModelLoadGenerator.Result;
+import study.querydsl.loadtest.OpenModelLoadGenerator.Scenario;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * /v1/members 와 페이징 검색의 처리량/꼬리 지연시간 측정. ./gradlew loadTest 로 실행한다.
+ * <p>
+ * 메모리 H2 에 회원을 채운 애플리케이션을 띄우고 MemberSearchCondition 조합을 섞어 일정한 도착률로 보낸다.
+ * 결과는 build/loadtest/members-*.json 으로 남겨 릴리스 전후를 비교한다.
+ * -Dloadtest.rate(초당 요청, 기본 200) -Dloadtest.duration(초, 기본 30) -Dloadtest.members(기본 10000)
+ */
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "logging.level.org.hibernate.SQL=info",
+        "spring.jpa.properties.hibernate.format_sql=false",
+        "spring.jpa.properties.hibernate.use_sql_comments=false"
+})
+public class MemberEndpointLoadTest {
+
+    private static final int TEAMS = 20;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    public void members() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        int durationSeconds = Integer.parseInt(System.getProperty("loadtest.duration", "30"));
+        int memberCount = Integer.parseInt(System.getProperty("loadtest.members", "10000"));
+        seed(memberCount);
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator("http://localhost:" + port, 1000);
+        List<Scenario> scenarios = scenarios(memberCount);
+
+        generator.run(scenarios(memberCount), rate, Duration.ofSeconds(Math.max(1, durationSeconds / 5))); //워밍업, 버린다
+        Result result = generator.run(scenarios, rate, Duration.ofSeconds(durationSeconds));
+
+        Map<String, Object> report = report(scenarios, result, rate, durationSeconds, memberCount);
+        Path dir = Files.createDirectories(Paths.get("build", "loadtest"));
+        Path file = dir.resolve("members-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+
+        System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        System.out.println("load test result written to " + file.toAbsolutePath());
+    }
+
+    private List<Scenario> scenarios(int memberCount) {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("v1.teamName", 30, () -> "/v1/members?teamName=team" + random(TEAMS)));
+        scenarios.add(new Scenario("v1.username", 20, () -> "/v1/members?username=member" + random(memberCount)));
+        scenarios.add(new Scenario("v1.ageRange", 15, () -> {
+            int from = random(90);
+            return "/v1/members?ageGoe=" + from + "&ageLoe=" + (from + 5);
+        }));
+        scenarios.add(new Scenario("v1.teamAndAge", 10, () -> "/v1/members?teamName=team" + random(TEAMS)
+                + "&ageGoe=" + random(50)));
+        scenarios.add(new Scenario("v2.page", 10, () -> "/v2/members?page=" + random(10) + "&size=20"));
+        scenarios.add(new Scenario("v3.pageSorted", 15, () -> "/v3/members?teamName=team" + random(TEAMS)
+                + "&page=" + random(5) + "&size=20&sort=age,desc"));
+        return scenarios;
+    }
+
+    private Map<String, Object> report(List<Scenario> scenarios, Result result, double rate, int durationSeconds,
+                                       int memberCount) {
+        double elapsedSeconds = result.elapsedNanos / 1e9;
+        long completed = result.latency.getTotalCount();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", LocalDateTime.now().minusSeconds((long) elapsedSeconds).toString());
+        report.put("targetRatePerSecond", rate);
+        report.put("durationSeconds", durationSeconds);
+        report.put("members", memberCount);
+        report.put("sent", result.sent);
+        report.put("completed", completed);
+        report.put("skippedClientSide", result.skipped.sum());
+        report.put("errors", result.errors.sum());
+        report.put("errorRate", completed == 0 ? 0 : (double) result.errors.sum() / completed);
+        report.put("throughputPerSecond", completed / elapsedSeconds);
+        report.put("latencyMs", OpenModelLoadGenerator.latencyMillis(result.latency));
+
+        Map<String, Object> perScenario = new LinkedHashMap<>();
+        for (Scenario scenario : scenarios) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("requests", scenario.requests.sum());
+            entry.put("errors", scenario.errors.sum());
+            entry.put("latencyMs", OpenModelLoadGenerator.latencyMillis(scenario.latency));
+            perScenario.put(scenario.name, entry);
+        }
+        report.put("scenarios", perScenario);
+        return report;
+    }
+
+    private void seed(int memberCount) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Team> teams = new ArrayList<>();
+            for (int t = 0; t < TEAMS; t++) {
+                Team team = new Team("team" + t);
+                em.persist(team);
+                teams.add(team);
+            }
+            List<Member> members = new ArrayList<>(memberCount);
+            for (int i = 0; i < memberCount; i++) {
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(teams.get(i % TEAMS));
+                members.add(member);
+            }
+            memberJpaRepository.saveAll(members, 1000);
+        });
+    }
+
+    private static int random(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+}
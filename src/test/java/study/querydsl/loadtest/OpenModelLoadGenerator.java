@@ -0,0 +1,143 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 열린 모델(open model) 부하 발생기.
+ * <p>
+ * 응답을 기다리지 않고 정해진 도착률로 요청을 보낸다. 지연시간은 "보내기로 예정했던 시각"부터 재므로
+ * 서버가 느려져 발생기가 밀려도 그 대기 시간까지 잡힌다. (coordinated omission 보정)
+ */
+class OpenModelLoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final int maxInFlight;
+
+    OpenModelLoadGenerator(String baseUrl, int maxInFlight) {
+        this.baseUrl = baseUrl;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 한 가지 요청 유형. weight 비율로 섞인다.
+     */
+    static class Scenario {
+
+        final String name;
+        final int weight;
+        final Supplier<String> pathAndQuery;
+
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        Scenario(String name, int weight, Supplier<String> pathAndQuery) {
+            this.name = name;
+            this.weight = weight;
+            this.pathAndQuery = pathAndQuery;
+        }
+    }
+
+    static class Result {
+
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        long sent;
+        long elapsedNanos;
+    }
+
+    Result run(List<Scenario> scenarios, double ratePerSecond, Duration duration) {
+        int totalWeight = scenarios.stream().mapToInt(s -> s.weight).sum();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long total = (long) (ratePerSecond * duration.getSeconds());
+        AtomicInteger inFlight = new AtomicInteger();
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Scenario scenario = pick(scenarios, totalWeight);
+            if (inFlight.get() >= maxInFlight) {
+                //클라이언트 쪽 한계라 서버 지연으로 세지 않고 따로 센다
+                result.skipped.increment();
+                continue;
+            }
+            inFlight.incrementAndGet();
+            scenario.requests.increment();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + scenario.pathAndQuery.get()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long latency = Math.min(System.nanoTime() - intended, MAX_LATENCY_NANOS);
+                        inFlight.decrementAndGet();
+                        scenario.latency.recordValue(latency);
+                        result.latency.recordValue(latency);
+                        if (error != null || response.statusCode() >= 400) {
+                            scenario.errors.increment();
+                            result.errors.increment();
+                        }
+                    });
+            result.sent++;
+        }
+
+        //남은 요청이 끝날 때까지 기다린다
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    static Map<String, Object> latencyMillis(Histogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.getTotalCount());
+        map.put("mean", histogram.getMean() / 1e6);
+        map.put("p50", histogram.getValueAtPercentile(50) / 1e6);
+        map.put("p90", histogram.getValueAtPercentile(90) / 1e6);
+        map.put("p99", histogram.getValueAtPercentile(99) / 1e6);
+        map.put("p999", histogram.getValueAtPercentile(99.9) / 1e6);
+        map.put("max", histogram.getMaxValue() / 1e6);
+        return map;
+    }
+
+    private static Scenario pick(List<Scenario> scenarios, int totalWeight) {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            r -= scenario.weight;
+            if (r < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+}
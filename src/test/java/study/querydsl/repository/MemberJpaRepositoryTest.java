@@ -1,9 +1,14 @@
 package study.querydsl.repository;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -12,10 +17,13 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
 
 @SpringBootTest
 @Transactional
@@ -56,6 +64,27 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void findByUsernamesTest() {
+        for (int i = 0; i < 5; i++) {
+            memberJpaRepository.save(new Member("member" + i, i));
+        }
+        memberJpaRepository.save(new Member("member1", 100)); //같은 이름
+        em.flush();
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long queries = statistics.getQueryExecutionCount();
+
+        Map<String, List<Member>> result = memberJpaRepository.findByUsernames(
+                List.of("member4", "member1", "member1", "member2", "member3", "nobody"), 2);
+
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(queries + 3); //중복을 뺀 5개를 2개씩
+        assertThat(result.keySet()).containsExactly("member4", "member1", "member2", "member3", "nobody");
+        assertThat(result.get("member1")).extracting("age").containsExactly(1, 100);
+        assertThat(result.get("member4")).hasSize(1);
+        assertThat(result.get("nobody")).isEmpty();
+    }
+
     @Test
     public void searchTest() {
         Team teamA = new Team("teamA");
@@ -111,4 +140,155 @@ class MemberJpaRepositoryTest {
         List<MemberTeamDto> result = memberJpaRepository.search(condition);
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchByBuilderAgeRange() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        condition.setAgeLoe(25);
+
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username").containsExactly("member2");
+    }
+
+    @Test
+    public void searchUnsatisfiable() {
+        em.persist(new Member("member1", 10));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(40);
+        condition.setAgeLoe(30);
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long queries = statistics.getQueryExecutionCount();
+
+        assertThat(memberJpaRepository.search(condition)).isEmpty();
+        assertThat(memberJpaRepository.searchByBuilder(condition)).isEmpty();
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(queries); //DB 에 가지 않았다
+    }
+
+    @Test
+    public void searchAllTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+
+        MemberSearchCondition byTeam = new MemberSearchCondition();
+        byTeam.setTeamName("teamB");
+        MemberSearchCondition sameTeam = new MemberSearchCondition();
+        sameTeam.setTeamName("teamB");
+        sameTeam.setUsername(""); //정리하면 byTeam 과 같다
+        MemberSearchCondition byAge = new MemberSearchCondition();
+        byAge.setAgeLoe(20);
+        MemberSearchCondition unsatisfiable = new MemberSearchCondition();
+        unsatisfiable.setAgeGoe(40);
+        unsatisfiable.setAgeLoe(30);
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long queries = statistics.getQueryExecutionCount();
+
+        List<List<MemberTeamDto>> results = memberJpaRepository.searchAll(List.of(byTeam, sameTeam, byAge, unsatisfiable));
+
+        assertThat(statistics.getQueryExecutionCount()).isEqualTo(queries + 1);
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0)).extracting("username").containsExactly("member3", "member4");
+        assertThat(results.get(1)).isSameAs(results.get(0));
+        assertThat(results.get(2)).extracting("username").containsExactly("member1", "member2");
+        assertThat(results.get(3)).isEmpty();
+    }
+
+    @Test
+    public void forEachChunkTest() {
+        for (int i = 0; i < 5; i++) {
+            memberJpaRepository.save(new Member("member" + i, i));
+        }
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        memberJpaRepository.forEachChunk(2, chunk -> {
+            chunkSizes.add(chunk.size());
+            chunk.forEach(m -> usernames.add(m.getUsername()));
+            chunk.forEach(m -> m.setAge(m.getAge() + 100));
+        });
+
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+        assertThat(usernames).containsExactly("member0", "member1", "member2", "member3", "member4");
+        //chunk 마다 flush 되었다
+        assertThat(memberJpaRepository.findAll_Querydsl()).extracting("age").containsExactlyInAnyOrder(100, 101, 102, 103, 104);
+    }
+
+    @Test
+    public void teamMembersWithoutLoading() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.flush();
+        em.clear();
+
+        Team findTeam = em.find(Team.class, teamA.getId());
+        assertThat(findTeam.getMembers().size()).isEqualTo(3); //extra lazy: count 쿼리
+        assertThat(memberJpaRepository.countByTeam(teamA.getId())).isEqualTo(3);
+        assertThat(memberJpaRepository.existsInTeam(teamA.getId(), member1.getId())).isTrue();
+        assertThat(memberJpaRepository.existsInTeam(teamB.getId(), member1.getId())).isFalse();
+
+        Slice<Member> slice = memberJpaRepository.findSliceByTeam(teamA.getId(), PageRequest.of(0, 2));
+        assertThat(slice.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(slice.hasNext()).isTrue();
+
+        //이전 팀 컬렉션을 읽지 않고 옮긴다
+        Member findMember = em.find(Member.class, member1.getId());
+        findMember.changeTeam(em.find(Team.class, teamB.getId()));
+        em.flush();
+
+        assertThat(Hibernate.isInitialized(findTeam.getMembers())).isFalse();
+        assertThat(memberJpaRepository.countByTeam(teamA.getId())).isEqualTo(2);
+        assertThat(memberJpaRepository.countByTeam(teamB.getId())).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkUpdateTest() {
+        memberJpaRepository.save(new Member("member1", 10));
+        memberJpaRepository.save(new Member("member2", 20));
+
+        long count = memberJpaRepository.bulkUpdate(member, update -> update
+                .set(member.age, member.age.add(1))
+                .where(member.age.lt(15)));
+
+        assertThat(count).isEqualTo(1);
+        //bulkUpdate 가 영속성 컨텍스트를 비웠으므로 DB 값을 다시 읽는다
+        assertThat(memberJpaRepository.findByUsername("member1").get(0).getAge()).isEqualTo(11);
+    }
+
+    @Test
+    public void saveAllTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            members.add(new Member("member" + i, i, teamA));
+        }
+        memberJpaRepository.saveAll(members, 50);
+
+        assertThat(members).allMatch(m -> m.getId() != null);
+        assertThat(em.contains(members.get(0))).isFalse(); //flush/clear 되어 준영속
+        assertThat(memberJpaRepository.findAll()).hasSize(120);
+    }
+}
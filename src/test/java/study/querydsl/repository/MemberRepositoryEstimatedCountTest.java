@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.stats.MemberStatistics;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * exact-below=0 이면 추정할 수 있는 조건은 항상 추정값을 쓴다.
+ * 통계는 커밋된 변경만 알아서 이 트랜잭션에서 넣은 회원은 추정값에 없다.
+ */
+@SpringBootTest(properties = "querydsl.estimated-count.exact-below=0")
+@Transactional
+class MemberRepositoryEstimatedCountTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberStatistics memberStatistics;
+
+    @Test
+    public void estimatedTotalIsNeverBelowRowsRead() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        long estimate = memberStatistics.estimateCount(new MemberSearchCondition()).getAsLong();
+
+        EstimatedPage<MemberTeamDto> page = memberRepository.searchPageEstimated(new MemberSearchCondition(),
+                PageRequest.of(1, 2), MemberTeamField.all());
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.isTotalEstimated()).isTrue();
+        //offset 2 + 읽은 2 + 다음 페이지가 있을 수 있는 1
+        assertThat(page.getTotalElements()).isEqualTo(Math.max(estimate, 5));
+        assertThat(page.hasNext()).isTrue();
+    }
+
+    @Test
+    public void usernameConditionIsCountedExactly() {
+        em.persist(new Member("same", 10));
+        em.persist(new Member("same", 20));
+        em.persist(new Member("other", 30));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("same");
+        EstimatedPage<MemberTeamDto> page = memberRepository.searchPageEstimated(condition,
+                PageRequest.of(0, 1), MemberTeamField.all());
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.isTotalEstimated()).isFalse();
+        assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+}
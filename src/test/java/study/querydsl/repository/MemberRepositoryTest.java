@@ -5,16 +5,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.EstimatedPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.EnumSet;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -97,4 +102,71 @@ class MemberRepositoryTest {
         assertThat(result.getSize()).isEqualTo(3);
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3"); 
     }
+
+    @Test
+    public void searchPageSorted() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("member1", 20, teamA));
+        em.persist(new Member("member2", 30, teamA));
+        em.persist(new Member("member3", 20, teamA));
+        em.persist(new Member("member4", 10, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        //teamName 은 인덱스로 정렬할 수 없어 버려지고, 같은 나이는 id 순서
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by("age").descending().and(Sort.by("teamName")));
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(condition, pageRequest);
+
+        assertThat(result.getContent()).extracting("username").containsExactly("member2", "member3", "member1");
+        assertThat(result.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    public void searchPageFields() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        //team 을 조인하지 않고 member.team_id 로 teamId 를 읽는다
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 10),
+                EnumSet.of(MemberTeamField.USERNAME, MemberTeamField.TEAM_ID));
+
+        assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(result.getContent()).extracting("teamId").containsOnly(teamA.getId());
+        assertThat(result.getContent()).extracting("teamName").containsOnlyNulls();
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    public void searchPageEstimatedSmallTotalIsExact() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+
+        //통계 추정값이 exact-below 보다 작으면 센다
+        EstimatedPage<MemberTeamDto> first = memberRepository.searchPageEstimated(new MemberSearchCondition(),
+                PageRequest.of(0, 2), MemberTeamField.all());
+        assertThat(first.getTotalElements()).isEqualTo(5);
+        assertThat(first.isTotalEstimated()).isFalse();
+
+        //마지막 페이지는 세지 않아도 안다
+        EstimatedPage<MemberTeamDto> last = memberRepository.searchPageEstimated(new MemberSearchCondition(),
+                PageRequest.of(2, 2), MemberTeamField.all());
+        assertThat(last.getContent()).hasSize(1);
+        assertThat(last.getTotalElements()).isEqualTo(5);
+        assertThat(last.isTotalEstimated()).isFalse();
+    }
+
+    @Test
+    public void searchPageUnknownSort() {
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by("password"));
+
+        assertThatThrownBy(() -> memberRepository.searchPageSimple(new MemberSearchCondition(), pageRequest))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
 }
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final AtomicInteger executed = new AtomicInteger();
+    private final AtomicInteger coalesced = new AtomicInteger();
+
+    private final SingleFlight.Listener listener = new SingleFlight.Listener() {
+        @Override
+        public void executed() {
+            executed.incrementAndGet();
+        }
+
+        @Override
+        public void coalesced() {
+            coalesced.incrementAndGet();
+        }
+
+        @Override
+        public void timedOut() {
+        }
+    };
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    return "result";
+                }, Duration.ofSeconds(5), listener));
+        started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute("key", () -> "not called", Duration.ofSeconds(5), listener));
+        while (coalesced.get() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(executed.get()).isEqualTo(1);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    public void errorPropagatesToWaiters() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute("key", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IllegalStateException("query failed");
+                }, Duration.ofSeconds(5), listener));
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute("key", () -> "not called", Duration.ofSeconds(5), listener));
+        while (coalesced.get() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("query failed");
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("query failed");
+
+        //끝난 키는 잊으므로 다음 호출은 다시 실행한다
+        assertThat(singleFlight.execute("key", () -> "retry", Duration.ofSeconds(5), listener)).isEqualTo("retry");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 로컬 H2 메모리 DB 세 개를 샤드로 쓴다.
+ */
+@SpringBootTest(properties = "querydsl.shard.urls=jdbc:h2:mem:shard0,jdbc:h2:mem:shard1,jdbc:h2:mem:shard2")
+class ShardedMemberRepositoryTest {
+
+    @Autowired
+    MemberShards shards;
+
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+
+    @Test
+    public void scatterGather() {
+        List<Member> saved = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            Team team = new Team("shardTeam" + t);
+            shardedMemberRepository.save(team);
+            for (int i = 0; i < 5; i++) {
+                Member member = new Member("shardMember" + t + "-" + i, (t * 7 + i * 3) % 20, team);
+                shardedMemberRepository.save(member);
+                saved.add(member);
+            }
+        }
+
+        //팀과 회원은 같은 샤드에 있고, 식별자로 샤드를 찾는다
+        Member any = saved.get(saved.size() - 1);
+        assertThat(shards.forId(any.getId())).isSameAs(shards.forId(any.getTeam().getId()));
+        assertThat(shardedMemberRepository.findById(any.getId())).get()
+                .extracting(Member::getUsername).isEqualTo(any.getUsername());
+
+        MemberSearchCondition teamCondition = new MemberSearchCondition();
+        teamCondition.setTeamName("shardTeam3");
+        assertThat(shardedMemberRepository.search(teamCondition)).hasSize(5);
+
+        //전체 순서로 합친 결과가 한 DB 에서 정렬한 것과 같아야 한다
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5);
+        List<String> expected = saved.stream()
+                .filter(m -> m.getAge() >= 5)
+                .sorted(Comparator.comparing(Member::getAge).reversed().thenComparing(Member::getId, Comparator.reverseOrder()))
+                .map(Member::getUsername)
+                .collect(Collectors.toList());
+
+        Page<MemberTeamDto> page = shardedMemberRepository.searchPage(condition, PageRequest.of(1, 4, Sort.by("age").descending()));
+
+        assertThat(page.getTotalElements()).isEqualTo(expected.size());
+        assertThat(page.getContent()).extracting("username").containsExactlyElementsOf(expected.subList(4, 8));
+    }
+}
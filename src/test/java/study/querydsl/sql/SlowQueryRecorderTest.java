@@ -0,0 +1,119 @@
+package study.querydsl.sql;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * threshold 0 이면 모든 SQL 이 기록된다.
+ */
+@SpringBootTest(properties = {"querydsl.slow-query.threshold-ms=0", "querydsl.slow-query.explain=false"})
+@Transactional
+class SlowQueryRecorderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    SlowQueryRecorder recorder;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    public void dataSourceIsWrappedOnce() {
+        assertThat(dataSource).isInstanceOf(InstrumentedDataSource.class);
+        assertThat(((InstrumentedDataSource) dataSource).getTargetDataSource())
+                .isNotInstanceOf(InstrumentedDataSource.class);
+    }
+
+    @Test
+    public void recordsSqlBindsRowsAndOrigin() {
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("member2", 20));
+        em.flush();
+        recorder.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        memberJpaRepository.search(condition);
+
+        SlowQueryEntry entry = recorder.entries().get(0);
+        assertThat(entry.getSql()).startsWith("select");
+        assertThat(entry.getBinds()).containsExactly("member1");
+        assertThat(entry.getRows()).isEqualTo(1);
+        assertThat(entry.getOrigin()).isEqualTo("MemberJpaRepository.search");
+    }
+
+    @Test
+    public void findByUsernamesPadsWithinRoundedChunk() {
+        for (int i = 0; i < 6; i++) {
+            em.persist(new Member("member" + i, i));
+        }
+        em.flush();
+        recorder.clear();
+
+        //6 은 4 로 내려서 4개, 2개로 나뉜다. 6개 그대로 나눴다면 8개로 채워져 chunkSize 를 넘는다
+        memberJpaRepository.findByUsernames(List.of("member0", "member1", "member2", "member3", "member4", "member5"), 6);
+
+        List<Integer> inLists = recorder.entries().stream()
+                .filter(entry -> entry.getSql().contains(" in ("))
+                .map(entry -> entry.getBinds().length)
+                .collect(Collectors.toList());
+        assertThat(inLists).containsExactlyInAnyOrder(4, 2);
+
+        //3개는 4개로 채워진다 (in_clause_parameter_padding)
+        recorder.clear();
+        memberJpaRepository.findByUsernames(List.of("member0", "member1", "member2"), 4);
+        SlowQueryEntry entry = recorder.entries().get(0);
+        assertThat(entry.getBinds()).containsExactly("member0", "member1", "member2", "member2");
+    }
+
+    @Test
+    public void explainIsAttachedWhenRecorded() {
+        SlowQueryRecorder explaining = new SlowQueryRecorder(10, 0, true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(rawDataSource(), null, explaining));
+
+        jdbcTemplate.queryForList("select username from member where age > ?", String.class, 10);
+
+        //기록되는 순간 계획이 이미 붙어 있다
+        SlowQueryEntry entry = explaining.entries().get(0);
+        assertThat(entry.getBinds()).containsExactly(10);
+        assertThat(entry.getPlan()).containsIgnoringCase("member");
+    }
+
+    @Test
+    public void batchIsRecordedWithoutBinds() {
+        SlowQueryRecorder batching = new SlowQueryRecorder(10, 0, false);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(rawDataSource(), null, batching));
+
+        //없는 id 라 바뀌는 행은 없다
+        jdbcTemplate.batchUpdate("update member set age = ? where member_id = ?",
+                Arrays.asList(new Object[]{1, -1L}, new Object[]{2, -2L}, new Object[]{3, -3L}));
+
+        SlowQueryEntry entry = batching.entries().get(0);
+        assertThat(entry.getSql()).startsWith("update member");
+        assertThat(entry.getBatchSize()).isEqualTo(3);
+        assertThat(entry.getBinds()).isNull(); //마지막 행 값만 남기지 않는다
+    }
+
+    private DataSource rawDataSource() {
+        return ((InstrumentedDataSource) dataSource).getTargetDataSource();
+    }
+}
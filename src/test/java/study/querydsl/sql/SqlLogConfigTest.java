@@ -0,0 +1,29 @@
+package study.querydsl.sql;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 테스트 설정은 org.hibernate.SQL debug, format_sql, use_sql_comments 를 켜 둔다.
+ */
+@SpringBootTest(properties = "querydsl.sql-log.enabled=true")
+class SqlLogConfigTest {
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    public void synchronousSqlLoggingIsOff() {
+        assertThat(LoggerFactory.getLogger(SqlLogConfig.HIBERNATE_SQL_LOGGER).isDebugEnabled()).isFalse();
+        assertThat(emf.getProperties())
+                .containsEntry(AvailableSettings.FORMAT_SQL, "false")
+                .containsEntry(AvailableSettings.USE_SQL_COMMENTS, "false");
+    }
+}
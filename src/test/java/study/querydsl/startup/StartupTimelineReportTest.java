@@ -0,0 +1,40 @@
+package study.querydsl.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupTimelineReportTest {
+
+    @Test
+    public void phases() {
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(100);
+        StartupStep refresh = startup.start(StartupTimelineReport.CONTEXT_REFRESH);
+        StartupStep emf = bean(startup, "entityManagerFactory");
+        bean(startup, "dataSource").end(); //emf 안에서 만들어진 빈은 두 번 세지 않는다
+        emf.end();
+        bean(startup, "jpaQueryFactory").end();
+        refresh.end();
+        startup.start(StartupTimelineReport.SEEDING).end();
+
+        List<TimelineEvent> events = startup.getBufferedTimeline().getEvents();
+        Map<String, Duration> phases = StartupTimelineReport.phases(events);
+
+        assertThat(phases).containsKeys("context refresh", "jpa + schema (ddl-auto)", "querydsl factory",
+                "seeding", "bean initialization");
+        assertThat(phases.get("bean initialization"))
+                .isEqualTo(phases.get("jpa + schema (ddl-auto)").plus(phases.get("querydsl factory")));
+        assertThat(StartupTimelineReport.slowestBeans(events, 1)).hasSize(1);
+    }
+
+    private static StartupStep bean(BufferingApplicationStartup startup, String beanName) {
+        return startup.start(StartupTimelineReport.BEAN_INSTANTIATE).tag(StartupTimelineReport.BEAN_NAME, beanName);
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.startup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * SeedingStatus 는 컨텍스트를 같이 쓰는 다른 테스트에도 보이므로 끝나면 READY 로 돌려놓는다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class WarmingInterceptorTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    SeedingStatus seedingStatus;
+
+    @AfterEach
+    public void ready() {
+        seedingStatus.ready();
+    }
+
+    @Test
+    public void warmingRejectsApiButNotActuator() throws Exception {
+        seedingStatus.warming();
+
+        for (String path : new String[]{"/v1/members", "/v2/members", "/v1/stats/members"}) {
+            mockMvc.perform(get(path))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, WarmingInterceptor.RETRY_AFTER_SECONDS))
+                    .andExpect(jsonPath("$.status").value("warming"));
+        }
+
+        mockMvc.perform(get("/actuator/info"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void readyAndFailedLetRequestsThrough() throws Exception {
+        seedingStatus.warming();
+        mockMvc.perform(get("/v1/members"))
+                .andExpect(status().isServiceUnavailable());
+
+        seedingStatus.ready();
+        mockMvc.perform(get("/v1/members"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.RETRY_AFTER));
+
+        //실패하면 있는 데이터로 응답한다
+        seedingStatus.warming();
+        seedingStatus.failed();
+        mockMvc.perform(get("/v1/members"))
+                .andExpect(status().isOk());
+    }
+}
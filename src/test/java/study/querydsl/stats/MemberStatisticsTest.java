@@ -0,0 +1,94 @@
+package study.querydsl.stats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberRow;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 통계는 커밋된 변경만 받으므로 @Transactional 없이 실행하고 끝나면 지운다.
+ */
+@SpringBootTest
+class MemberStatisticsTest {
+
+    @Autowired
+    MemberStatistics memberStatistics;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transactionTemplate;
+    Long movedId;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        movedId = transactionTemplate.execute(status -> {
+            Team statsTeam = new Team("statsTeam");
+            em.persist(statsTeam);
+            em.persist(new Member("stats1", 10, statsTeam));
+            em.persist(new Member("stats2", 20, statsTeam));
+            Member moved = new Member("stats3", 30, statsTeam);
+            em.persist(moved);
+            return moved.getId();
+        });
+        memberStatistics.rebuild();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+        });
+    }
+
+    @Test
+    public void updateWithoutBeforeRebuilds() {
+        assertThat(memberStatistics.estimateCount(teamName("statsTeam")).getAsLong()).isEqualTo(3);
+        long agedBefore = memberStatistics.estimateCount(ageGoe(200)).getAsLong();
+
+        //영속성 컨텍스트를 거치지 않고 바꿔서 변경 전 값을 모르는 통지를 흉내 낸다
+        jdbcTemplate.update("update member set age = 200, team_id = null where member_id = ?", movedId);
+        memberStatistics.onMemberUpdated(null, new MemberRow(movedId, "stats3", 200, null));
+
+        assertThat(memberStatistics.estimateCount(teamName("statsTeam")).getAsLong()).isEqualTo(2);
+        assertThat(memberStatistics.estimateCount(ageGoe(200)).getAsLong()).isEqualTo(agedBefore + 1);
+    }
+
+    private static MemberSearchCondition teamName(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+
+    private static MemberSearchCondition ageGoe(int ageGoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(ageGoe);
+        return condition;
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SketchTest {
+
+    @Test
+    public void hyperLogLogEstimate() {
+        HyperLogLog hll = new HyperLogLog(14);
+        HyperLogLog other = new HyperLogLog(14);
+        for (int i = 0; i < 100_000; i++) {
+            hll.add("member" + i);
+            hll.add("member" + i); //중복은 세지 않는다
+            other.add("member" + (i + 50_000));
+        }
+
+        assertThat(hll.estimate()).isCloseTo(100_000L, within(3_000L)); //표준오차 0.81% 의 4배 안
+        hll.merge(other);
+        assertThat(hll.estimate()).isCloseTo(150_000L, within(4_500L));
+    }
+
+    @Test
+    public void quantileSketchCountBetween() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        for (int age = 0; age < 100; age++) {
+            sketch.add(age);
+        }
+
+        //구간 너비가 1 보다 작은 값(50 미만)에서는 정확하고, 그 위는 경계에서 구간 하나만큼 틀릴 수 있다
+        assertThat(sketch.countBetween(null, null)).isEqualTo(100);
+        assertThat(sketch.countBetween(20L, 29L)).isEqualTo(10);
+        assertThat(sketch.countBetween(null, 9L)).isEqualTo(10);
+        assertThat(sketch.countBetween(90L, null)).isCloseTo(10L, within(2L));
+    }
+
+    @Test
+    public void quantileSketchRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        int[] ages = new int[10_001];
+        Random random = new Random(42);
+        for (int i = 0; i < ages.length; i++) {
+            ages[i] = 1 + random.nextInt(100);
+            sketch.add(ages[i]);
+        }
+        Arrays.sort(ages);
+
+        for (double q : new double[]{0.1, 0.5, 0.9, 0.99}) {
+            int exact = ages[(int) (q * (ages.length - 1))];
+            assertThat(sketch.quantile(q)).isCloseTo(exact, within(exact * 0.01 + 1e-9));
+        }
+
+        //정수 나이는 히스토그램이 정확하다
+        long twenties = Arrays.stream(ages).filter(age -> age >= 20 && age < 30).count();
+        assertThat(sketch.histogram(10).get(20L)).isEqualTo(twenties);
+
+        sketch.remove(ages[0]);
+        assertThat(sketch.count()).isEqualTo(ages.length - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.warmup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"querydsl.warmup.enabled=true", "querydsl.warmup.iterations=1"})
+class QueryWarmupTest {
+
+    @Autowired
+    QueryWarmup queryWarmup;
+
+    @Autowired
+    ApplicationAvailability availability;
+
+    @Test
+    public void warmedUpBeforeReady() {
+        assertThat(queryWarmup.getDuration()).isNotNull();
+        assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    public void everyConditionShape() {
+        List<MemberSearchCondition> conditions = QueryWarmup.conditions("teamA");
+
+        assertThat(conditions).hasSize(17).doesNotHaveDuplicates();
+        assertThat(conditions).anyMatch(c -> c.getUsername() == null && c.getTeamName() == null
+                && c.getAgeGoe() == null && c.getAgeLoe() == null);
+        assertThat(conditions).anyMatch(c -> c.getUsername() != null && c.getTeamName() != null
+                && c.getAgeGoe() != null && c.getAgeLoe() != null);
+    }
+
+    @Test
+    public void teamConditionsUseGivenName() {
+        assertThat(QueryWarmup.conditions("teamA"))
+                .filteredOn(c -> c.getTeamName() != null)
+                .hasSize(8)
+                .allMatch(c -> c.getTeamName().equals("teamA"));
+    }
+}
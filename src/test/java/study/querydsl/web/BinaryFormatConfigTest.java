@@ -0,0 +1,137 @@
+package study.querydsl.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Accept 헤더로 고르는 바이너리 응답을 실제로 디코딩해 본다.
+ * 요청은 MockMvc 안에서 따로 트랜잭션을 열므로 데이터는 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BinaryFormatConfigTest {
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, null));
+        });
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberJpaRepository.bulkDelete(member, delete -> delete);
+            memberJpaRepository.bulkDelete(team, delete -> delete);
+        });
+    }
+
+    @Test
+    public void smileKeepsFieldsFilter() throws Exception {
+        byte[] body = mockMvc.perform(get("/v3/members")
+                        .param("fields", "username,teamName")
+                        .param("sort", "age")
+                        .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = new ObjectMapper(new SmileFactory()).readTree(body);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(2);
+        JsonNode first = page.get("content").get(0);
+        assertThat(first.get("username").asText()).isEqualTo("member1");
+        assertThat(first.get("teamName").asText()).isEqualTo("teamA");
+        //고르지 않은 필드는 나가지 않는다
+        assertThat(first.has("memberId")).isFalse();
+        assertThat(first.has("age")).isFalse();
+
+        //필드를 고르지 않으면 기본 필터로 모두 나간다
+        body = mockMvc.perform(get("/v2/members").accept(SMILE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(body).get("content").get(0).has("age")).isTrue();
+    }
+
+    @Test
+    public void columnarDecodesToRows() throws Exception {
+        byte[] body = mockMvc.perform(get("/v1/members")
+                        .param("fields", "username,age")
+                        .accept(MemberColumnarHttpMessageConverter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MemberColumnarHttpMessageConverter.MEDIA_TYPE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertThat(magic).isEqualTo(MemberColumnarHttpMessageConverter.MAGIC);
+        assertThat(MemberColumnarHttpMessageConverterTest.readVarLong(in))
+                .isEqualTo(MemberColumnarHttpMessageConverter.KIND_LIST);
+        List<MemberTeamDto> rows = MemberColumnarHttpMessageConverterTest.readRows(in);
+        assertThat(in.read()).isEqualTo(-1);
+
+        //고르지 않은 필드도 열은 있고 값은 null
+        assertThat(rows).extracting("memberId", "username", "age", "teamId", "teamName")
+                .containsExactlyInAnyOrder(
+                        tuple(null, "member1", 10, null, null),
+                        tuple(null, "member2", 20, null, null));
+    }
+
+    @Test
+    public void jsonWithoutAccept() throws Exception {
+        mockMvc.perform(get("/v1/members"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+}
@@ -0,0 +1,148 @@
+package study.querydsl.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import study.querydsl.dto.EstimatedPage;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.dto.MemberTeamJacksonValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberColumnarHttpMessageConverterTest {
+
+    private final MemberColumnarHttpMessageConverter converter = new MemberColumnarHttpMessageConverter();
+
+    @Test
+    public void writesOnlyMemberTeamDtoResults() {
+        MediaType columns = MemberColumnarHttpMessageConverter.MEDIA_TYPE;
+
+        assertThat(converter.canWrite(new ParameterizedTypeReference<List<MemberTeamDto>>() {}.getType(), List.class, columns)).isTrue();
+        assertThat(converter.canWrite(new ParameterizedTypeReference<List<List<MemberTeamDto>>>() {}.getType(), List.class, columns)).isFalse();
+        assertThat(converter.canWrite(Map.class, Map.class, columns)).isFalse();
+        assertThat(converter.canWrite(new ParameterizedTypeReference<List<MemberTeamDto>>() {}.getType(), List.class,
+                MediaType.APPLICATION_JSON)).isFalse();
+
+        //MappingJacksonValue 는 안에 든 타입을 알 수 있는 것만
+        assertThat(converter.canWrite(MappingJacksonValue.class, MemberTeamJacksonValue.class, columns)).isTrue();
+        assertThat(converter.canWrite(MappingJacksonValue.class, MappingJacksonValue.class, columns)).isFalse();
+    }
+
+    @Test
+    public void readIsNotSupported() {
+        MockHttpInputMessage message = new MockHttpInputMessage(new byte[0]);
+
+        assertThat(converter.canRead(List.class, MemberColumnarHttpMessageConverter.MEDIA_TYPE)).isFalse();
+        assertThatThrownBy(() -> converter.read(List.class, null, message))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<MemberTeamDto> rows = List.of(
+                new MemberTeamDto(1L, "member1", 10, 100L, "teamA"),
+                new MemberTeamDto(2L, "회원2", 20, 101L, "teamB"),
+                new MemberTeamDto(3L, null, 30, null, null),
+                new MemberTeamDto(4L, "member4", 40, 100L, "teamA"));
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+
+        converter.write(MemberTeamJacksonValue.of(new EstimatedPage<>(rows, PageRequest.of(0, 4), 40_000, true),
+                        MemberTeamField.all()), null, MemberColumnarHttpMessageConverter.MEDIA_TYPE, message);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBodyAsBytes()));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertThat(magic).isEqualTo(MemberColumnarHttpMessageConverter.MAGIC);
+        assertThat(readVarLong(in)).isEqualTo(MemberColumnarHttpMessageConverter.KIND_PAGE);
+        assertThat(readVarLong(in)).isEqualTo(40_000); //totalElements
+        assertThat(readVarLong(in)).isEqualTo(0);      //number
+        assertThat(readVarLong(in)).isEqualTo(4);      //size
+        assertThat(in.readByte()).isEqualTo((byte) 1); //totalEstimated
+
+        assertThat(readRows(in)).isEqualTo(rows);
+        assertThat(in.read()).isEqualTo(-1);
+    }
+
+    /**
+     * 클라이언트 쪽 디코더. 형식은 MemberColumnarHttpMessageConverter 문서를 따른다.
+     */
+    static List<MemberTeamDto> readRows(DataInputStream in) throws IOException {
+        int n = (int) readVarLong(in);
+        Long[] memberIds = new Long[n];
+        String[] usernames = new String[n];
+        int[] ages = new int[n];
+        Long[] teamIds = new Long[n];
+
+        boolean[] present = readNulls(in, n);
+        for (int i = 0; i < n; i++) {
+            memberIds[i] = present[i] ? readVarLong(in) : null;
+        }
+        present = readNulls(in, n);
+        for (int i = 0; i < n; i++) {
+            usernames[i] = present[i] ? readString(in) : null;
+        }
+        for (int i = 0; i < n; i++) {
+            ages[i] = (int) readVarLong(in);
+        }
+        present = readNulls(in, n);
+        for (int i = 0; i < n; i++) {
+            teamIds[i] = present[i] ? readVarLong(in) : null;
+        }
+        String[] dictionary = new String[(int) readVarLong(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = readString(in);
+        }
+
+        List<MemberTeamDto> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int code = (int) readVarLong(in);
+            rows.add(new MemberTeamDto(memberIds[i], usernames[i], ages[i], teamIds[i], code == 0 ? null : dictionary[code - 1]));
+        }
+        return rows;
+    }
+
+    private static boolean[] readNulls(DataInputStream in, int n) throws IOException {
+        boolean[] present = new boolean[n];
+        int bits = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i & 7) == 0) {
+                bits = in.readUnsignedByte();
+            }
+            present[i] = (bits & (1 << (i & 7))) != 0;
+        }
+        return present;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.HibernateCommitEventBridge;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * flush 가 자기 트랜잭션으로 커밋하므로 @Transactional 없이 실행하고 끝나면 지운다.
+ */
+@SpringBootTest(properties = "querydsl.write-behind.flush-interval-ms=3600000")
+class MemberAgeWriteBehindTest {
+
+    @Autowired
+    MemberAgeWriteBehind writeBehind;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    HibernateCommitEventBridge eventBridge;
+
+    @AfterEach
+    public void cleanUp() {
+        writeBehind.flush();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                memberJpaRepository.bulkDelete(member, delete -> delete));
+    }
+
+    @Test
+    public void concurrentIncrementsAreFlushedAsOneUpdate() throws Exception {
+        Member hot = new Member("member1", 10);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> memberJpaRepository.save(hot));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CompletableFuture.allOf(IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        for (int n = 0; n < 1000; n++) {
+                            writeBehind.add(hot.getId(), 1);
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        //아직 DB 에는 쓰지 않았지만 읽으면 보인다
+        assertThat(writeBehind.pendingDelta(hot.getId())).isEqualTo(8000);
+        assertThat(writeBehind.currentAge(hot.getId())).isEqualTo(8010);
+
+        assertThat(writeBehind.flush()).isEqualTo(1);
+        assertThat(writeBehind.pendingDelta(hot.getId())).isZero();
+        assertThat(memberJpaRepository.findById(hot.getId()).get().getAge()).isEqualTo(8010);
+    }
+
+    @Test
+    public void addsRacingCloseAreFlushedOrRejected() throws Exception {
+        Member hot = new Member("member1", 10);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> memberJpaRepository.save(hot));
+        //빈은 다른 테스트가 계속 쓰므로 따로 만들어 닫는다
+        MemberAgeWriteBehind closing = new MemberAgeWriteBehind(jdbcTemplate, namedJdbcTemplate, transactionManager,
+                emf, eventBridge, 10_000, 50);
+
+        LongAdder accepted = new LongAdder();
+        CountDownLatch adding = new CountDownLatch(8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CompletableFuture<?>[] writers = IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                        try {
+                            closing.add(hot.getId(), 1);
+                            accepted.increment();
+                            adding.countDown();
+                            while (true) {
+                                closing.add(hot.getId(), 1);
+                                accepted.increment();
+                            }
+                        } catch (IllegalStateException closed) {
+                            //close 뒤의 add 는 거절된다
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new);
+
+            adding.await();
+            closing.close();
+            CompletableFuture.allOf(writers).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        //거절되지 않은 add 는 하나도 빠지지 않고 DB 에 있다
+        assertThat(memberJpaRepository.findById(hot.getId()).get().getAge()).isEqualTo((int) (10 + accepted.sum()));
+    }
+}